@@ -17,4 +17,8 @@ ALTER TABLE tasks
 
 CREATE INDEX IF NOT EXISTS idx_tasks_type        ON tasks(type);
 CREATE INDEX IF NOT EXISTS idx_tasks_start_time  ON tasks(start_time);
-CREATE INDEX IF NOT EXISTS idx_tasks_epic_id     ON tasks(epic_id);
\ No newline at end of file
+CREATE INDEX IF NOT EXISTS idx_tasks_epic_id     ON tasks(epic_id);
+
+-- keyset pagination for TaskManager.query
+CREATE INDEX IF NOT EXISTS idx_tasks_status_id   ON tasks(status, id);
+CREATE INDEX IF NOT EXISTS idx_tasks_timeline    ON tasks(start_time, duration_min, id);
\ No newline at end of file
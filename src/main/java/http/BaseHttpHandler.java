@@ -1,6 +1,8 @@
 package http;
 
 import com.sun.net.httpserver.HttpExchange;
+import manager.OperationResult;
+import model.Task;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -49,4 +51,32 @@ public class BaseHttpHandler {
     public void sendHasOverlaps(HttpExchange ex, String text) throws IOException {
         sendResponse(ex, 406, text);
     }
+
+    // reads the request body as a task; a body that is not one, including a negative duration, is answered
+    // with 400 here and null comes back, so that an IllegalArgumentException from the manager always means
+    // the task was refused
+    protected <T extends Task> T readTask(HttpExchange h, Class<T> type) throws IOException {
+        String body = new String(h.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        T task;
+        try {
+            task = HttpTaskServer.getGson().fromJson(body, type);
+        } catch (RuntimeException e) {
+            sendResponse(h, 400, "Invalid task: " + e.getMessage());
+            return null;
+        }
+        if (task == null) {
+            sendResponse(h, 400, "Request body must contain a task");
+        }
+        return task;
+    }
+
+    // answers a mutation from the manager's result, so the handler needs no lookup of its own beforehand
+    protected void sendResult(HttpExchange h, OperationResult result, String success, String notFound) throws IOException {
+        switch (result.getOutcome()) {
+            case UPDATED, DELETED -> sendText(h, success);
+            case NOT_FOUND -> sendNotFound(h, 404, notFound);
+            case CONFLICT -> sendHasOverlaps(h, result.getMessage());
+            default -> sendResponse(h, 400, result.getMessage());
+        }
+    }
 }
\ No newline at end of file
@@ -4,23 +4,33 @@ import com.google.gson.*;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
+import manager.Diagnostics;
 import manager.Managers;
 import manager.TaskManager;
+import manager.TaskQuery;
+import manager.TaskType;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.InetSocketAddress;
+import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
 
 import model.Epic;
+import model.Status;
 import model.SubTask;
 import model.Task;
 
 public class HttpTaskServer {
     private static final int PORT = 8080;
-    static TaskManager manager = Managers.getDefault();
+    // handlers run on a pool of threads, so the shared manager has to be safe to call from all of them
+    static TaskManager manager = Managers.getConcurrent();
     static HttpServer server;
     private static final Gson gson = new GsonBuilder()
             // LocalDateTime
@@ -28,6 +38,8 @@ public class HttpTaskServer {
                     (src, t, c) -> src == null ? JsonNull.INSTANCE : new JsonPrimitive(src.toString()))
             .registerTypeAdapter(LocalDateTime.class, (JsonDeserializer<LocalDateTime>)
                     (json, t, c) -> json == null || json.isJsonNull() ? null : LocalDateTime.parse(json.getAsString()))
+            // task schedules are stored as minutes, but exchanged as startTime and duration
+            .registerTypeAdapterFactory(new TaskJsonAdapterFactory())
             // to ensure subtasks != null, otherwise it doesn't work
             .registerTypeAdapter(Epic.class, (InstanceCreator<Epic>) type -> new Epic("", ""))
             // Duration
@@ -47,19 +59,62 @@ public class HttpTaskServer {
         server = HttpServer.create();
 
         server.bind(new InetSocketAddress(PORT), 0); // bind server to port
+        server.setExecutor(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()));
         server.createContext("/tasks", new TasksHandler()).getFilters().add(new CorsFilter());
         server.createContext("/subtasks", new SubTasksHandler()).getFilters().add(new CorsFilter());
         server.createContext("/epics", new EpicsHandler()).getFilters().add(new CorsFilter());
         server.createContext("/history", new HistoryHandler()).getFilters().add(new CorsFilter());
         server.createContext("/prioritized", new PrioritizedHandler()).getFilters().add(new CorsFilter());
+        server.createContext("/schedule", new ScheduleHandler()).getFilters().add(new CorsFilter());
 
         server.start(); // start server
     }
 
+    // GET /tasks?type=SUBTASK&status=NEW&epic=3&from=2025-01-01T00:00&to=...&order=start&desc=true&limit=20&cursor=...
+    static TaskQuery parseQuery(String rawQuery) {
+        TaskQuery query = TaskQuery.all();
+        LocalDateTime from = null;
+        LocalDateTime to = null;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            switch (name) {
+                case "type" -> query.type(TaskType.valueOf(value.toUpperCase()));
+                case "status" -> query.status(Status.valueOf(value.toUpperCase()));
+                case "epic" -> query.epic(Integer.parseInt(value));
+                case "from" -> from = LocalDateTime.parse(value);
+                case "to" -> to = LocalDateTime.parse(value);
+                case "order" -> query.orderBy("start".equalsIgnoreCase(value) ? TaskQuery.Order.START_TIME : TaskQuery.Order.ID);
+                case "desc" -> {
+                    if (Boolean.parseBoolean(value)) {
+                        query.descending();
+                    }
+                }
+                case "limit" -> query.limit(Integer.parseInt(value));
+                case "cursor" -> query.after(value);
+                default -> throw new IllegalArgumentException("Unknown query parameter: " + name);
+            }
+        }
+        return query.startingBetween(from, to);
+    }
+
+    static Map<String, String> parseParams(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery != null) {
+            for (String pair : rawQuery.split("&")) {
+                String[] kv = pair.split("=", 2);
+                params.put(kv[0], kv.length > 1 ? URLDecoder.decode(kv[1], StandardCharsets.UTF_8) : "");
+            }
+        }
+        return params;
+    }
+
     public static Gson getGson() {
         return gson;
     }
 
+    // requests are handled one at a time here, because the given manager need not be thread-safe
     public HttpTaskServer(TaskManager manager) throws IOException {
         HttpTaskServer.manager = manager;
         server = HttpServer.create();
@@ -69,6 +124,7 @@ public class HttpTaskServer {
         server.createContext("/epics", new EpicsHandler());
         server.createContext("/history", new HistoryHandler());
         server.createContext("/prioritized", new PrioritizedHandler());
+        server.createContext("/schedule", new ScheduleHandler());
     }
 
     public void start() {
@@ -82,7 +138,7 @@ public class HttpTaskServer {
     static class TasksHandler extends BaseHttpHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange ex) throws IOException {
-            System.out.println("Started handling /tasks request from client.");
+            Diagnostics.debug("Started handling /tasks request from client.");
 
             String method = ex.getRequestMethod();
             if ("OPTIONS".equalsIgnoreCase(ex.getRequestMethod())) {
@@ -121,8 +177,16 @@ public class HttpTaskServer {
 
         public void handleGet(HttpExchange ex) throws IOException {
             Integer id = identifyId(ex);
-            if (id == null) {
-                String json = gson.toJson(manager.getAllTasks());
+            String rawQuery = ex.getRequestURI().getRawQuery();
+            if (id == null && rawQuery != null) {
+                try {
+                    sendResponse(ex, 200, gson.toJson(manager.query(parseQuery(rawQuery))));
+                } catch (RuntimeException e) {
+                    sendResponse(ex, 400, e.getMessage());
+                }
+            } else if (id == null) {
+                // serialized from a snapshot, so concurrent writes can neither block nor tear the response
+                String json = gson.toJson(manager.snapshot().getAllTasks());
                 sendResponse(ex, 200, json);
             } else {
                 Task t = manager.getTask(id);
@@ -137,14 +201,15 @@ public class HttpTaskServer {
 
         public void handlePost(HttpExchange ex) throws IOException {
             Integer id = identifyId(ex);
+            Task task = readTask(ex, Task.class);
+            if (task == null) {
+                return;
+            }
             if (id == null) {
-                InputStream is = ex.getRequestBody();
-                String body = new String(is.readAllBytes(), StandardCharsets.UTF_8);
                 try {
-                    Task task = gson.fromJson(body, Task.class);
                     task.setId(-1);
                     manager.addTask(task);
-                    System.out.println(task);
+                    Diagnostics.debug("Added ", task);
                     sendResponse(ex, 201, "Task " + task.getId() + " successfully added");
                 } catch (IllegalArgumentException e) {
                     sendHasOverlaps(ex, e.getMessage());
@@ -154,15 +219,7 @@ public class HttpTaskServer {
                 }
 
             } else {
-                InputStream is = ex.getRequestBody();
-                String body = new String(is.readAllBytes(), StandardCharsets.UTF_8);
-                Task task = gson.fromJson(body, Task.class);
-                if (manager.getTask(id) != null) {
-                    manager.updateTask(id, task);
-                    sendText(ex, "Task " + task.getId() + " successfully updated");
-                } else {
-                    sendNotFound(ex, 404, "Task not found");
-                }
+                sendResult(ex, manager.update(id, task), "Task " + id + " successfully updated", "Task not found");
 
             }
         }
@@ -178,12 +235,7 @@ public class HttpTaskServer {
             if (id == null) {
                 sendNotFound(ex, 404, "Task id not provided");
             } else {
-                if (manager.getTask(id) != null) {
-                    manager.deleteByID(id);
-                    sendText(ex, "Task " + id + " successfully deleted");
-                } else {
-                    sendNotFound(ex, 404, "No such task");
-                }
+                sendResult(ex, manager.delete(id), "Task " + id + " successfully deleted", "No such task");
             }
         }
     }
@@ -191,7 +243,7 @@ public class HttpTaskServer {
     static class SubTasksHandler extends BaseHttpHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange ex) throws IOException {
-            System.out.println("Started handling /subtasks request from client.");
+            Diagnostics.debug("Started handling /subtasks request from client.");
 
             String method = ex.getRequestMethod();
             if ("OPTIONS".equalsIgnoreCase(ex.getRequestMethod())) {
@@ -240,13 +292,14 @@ public class HttpTaskServer {
 
         public void handlePost(HttpExchange ex) throws IOException {
             Integer id = identifyId(ex);
+            SubTask task = readTask(ex, SubTask.class);
+            if (task == null) {
+                return;
+            }
             if (id == null) {
-                InputStream is = ex.getRequestBody();
-                String body = new String(is.readAllBytes(), StandardCharsets.UTF_8);
                 try {
-                    SubTask task = gson.fromJson(body, SubTask.class);
                     task.setId(-1);
-                    if (manager.getTask(task.getEpicId()) != null) {
+                    if (manager.peek(task.getEpicId()) instanceof Epic) {
                         manager.addTask(task);
                         sendResponse(ex, 201,"Subtask " + task.getId() + " successfully added");
                     } else {
@@ -259,16 +312,7 @@ public class HttpTaskServer {
                     return;
                 }
             } else {
-                InputStream is = ex.getRequestBody();
-                String body = new String(is.readAllBytes(), StandardCharsets.UTF_8);
-                SubTask task = gson.fromJson(body, SubTask.class);
-                System.out.println(task.toString());
-                if (manager.getTask(id) != null) {
-                    manager.updateTask(id, task);
-                    sendText(ex, "Subtask " + task.getId() + " successfully updated");
-                } else {
-                    sendNotFound(ex, 404, "Subtask not found");
-                }
+                sendResult(ex, manager.update(id, task), "Subtask " + id + " successfully updated", "Subtask not found");
             }
         }
 
@@ -277,12 +321,7 @@ public class HttpTaskServer {
             if (id == null) {
                 sendNotFound(ex, 404, "Task id not provided");
             } else {
-                if (manager.getTask(id) != null) {
-                    manager.deleteByID(id);
-                    sendText(ex, "Task " + id + " successfully deleted");
-                } else {
-                    sendNotFound(ex, 404, "No such task");
-                }
+                sendResult(ex, manager.delete(id), "Task " + id + " successfully deleted", "No such task");
             }
         }
     }
@@ -290,7 +329,7 @@ public class HttpTaskServer {
     static class EpicsHandler extends BaseHttpHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange ex) throws IOException {
-            System.out.println("Started handling /epics request from client.");
+            Diagnostics.debug("Started handling /epics request from client.");
 
             String method = ex.getRequestMethod();
             if ("OPTIONS".equalsIgnoreCase(ex.getRequestMethod())) {
@@ -383,12 +422,7 @@ public class HttpTaskServer {
             if (id == null) {
                 sendNotFound(ex, 404, "Task id not provided");
             } else {
-                if (manager.getTask(id) != null) {
-                    manager.deleteByID(id);
-                    sendText(ex, "Task " + id + " successfully deleted");
-                } else {
-                    sendNotFound(ex, 404, "No such task");
-                }
+                sendResult(ex, manager.delete(id), "Task " + id + " successfully deleted", "No such task");
             }
         }
     }
@@ -402,7 +436,18 @@ public class HttpTaskServer {
                 return;
             }
             if (method.equals("GET")) {
-                String json = gson.toJson(manager.getHistory());
+                Map<String, String> params = parseParams(ex.getRequestURI().getRawQuery());
+                List<Task> history;
+                try {
+                    history = params.containsKey("offset") || params.containsKey("limit")
+                            ? manager.getHistory(Integer.parseInt(params.getOrDefault("offset", "0")),
+                                    Integer.parseInt(params.getOrDefault("limit", String.valueOf(Integer.MAX_VALUE))))
+                            : manager.getHistory();
+                } catch (IllegalArgumentException e) {
+                    sendResponse(ex, 400, "Expected offset and limit as non-negative integers");
+                    return;
+                }
+                String json = gson.toJson(history);
                 sendResponse(ex, 200, json);
             } else {
                 sendNotFound(ex, 405, "Nothing was found for your request");
@@ -415,8 +460,18 @@ public class HttpTaskServer {
         @Override
         public void handle(HttpExchange ex) throws IOException {
             String method = ex.getRequestMethod();
-            if (method.equals("GET")) {
-                String json = gson.toJson(manager.getPrioritizedTasks());
+            if (method.equals("GET") && ex.getRequestURI().getRawQuery() != null) {
+                // GET /prioritized?from=2025-01-07T09:00&to=2025-01-07T17:00
+                try {
+                    Map<String, String> params = parseParams(ex.getRequestURI().getRawQuery());
+                    LocalDateTime from = LocalDateTime.parse(params.get("from"));
+                    LocalDateTime to = LocalDateTime.parse(params.get("to"));
+                    sendResponse(ex, 200, gson.toJson(manager.getTasksBetween(from, to)));
+                } catch (RuntimeException e) {
+                    sendResponse(ex, 400, "Expected from and to as ISO date-times");
+                }
+            } else if (method.equals("GET")) {
+                String json = gson.toJson(manager.snapshot().getPrioritizedTasks());
                 sendResponse(ex, 200, json);
             } else {
                 sendNotFound(ex, 405, "Nothing was found for your request");
@@ -424,4 +479,58 @@ public class HttpTaskServer {
             }
         }
     }
+
+    static class ScheduleHandler extends BaseHttpHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange ex) throws IOException {
+            String method = ex.getRequestMethod();
+            if ("OPTIONS".equalsIgnoreCase(method)) {
+                handlePreflight(ex);
+                return;
+            }
+            // both take an optional from=2025-01-07T09:00, otherwise the search starts now
+            Map<String, String> params = parseParams(ex.getRequestURI().getRawQuery());
+            LocalDateTime from;
+            try {
+                from = params.containsKey("from") ? LocalDateTime.parse(params.get("from")) : null;
+            } catch (RuntimeException e) {
+                sendResponse(ex, 400, "Expected from as an ISO date-time");
+                return;
+            }
+            if (method.equals("GET")) {
+                // GET /schedule?duration=90 or ?duration=PT1H30M: start of the earliest free slot that long
+                try {
+                    String value = params.get("duration");
+                    Duration duration = value.startsWith("PT") ? Duration.parse(value)
+                            : Duration.ofMinutes(Long.parseLong(value));
+                    sendResponse(ex, 200, gson.toJson(manager.findFreeSlot(duration, from)));
+                } catch (RuntimeException e) {
+                    sendResponse(ex, 400, "Expected duration in minutes or as an ISO duration");
+                }
+            } else if (method.equals("POST")) {
+                // POST /schedule with a task or subtask that has a duration: added in the earliest free slot
+                String body = new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                try {
+                    JsonObject json = JsonParser.parseString(body).getAsJsonObject();
+                    Task task = gson.fromJson(json, json.has("epicId") ? SubTask.class : Task.class);
+                    task.setId(-1);
+                    if (task instanceof SubTask subtask && !(manager.peek(subtask.getEpicId()) instanceof Epic)) {
+                        sendNotFound(ex, 404, "Epic with id " + subtask.getEpicId() + " not found");
+                        return;
+                    }
+                    manager.addTaskAutoScheduled(task, from);
+                    // the epic may have been deleted since it was looked up, and then nothing was added
+                    if (task.getId() < 0) {
+                        sendResponse(ex, 400, "Task was not added");
+                        return;
+                    }
+                    sendResponse(ex, 201, gson.toJson(task));
+                } catch (Exception e) {
+                    sendResponse(ex, 400, e.getMessage());
+                }
+            } else {
+                sendNotFound(ex, 405, "Nothing was found for your request");
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,61 @@
+package http;
+
+import com.google.gson.*;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import model.Epic;
+import model.Task;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+// Tasks keep their schedule in primitive minute fields that Gson does not see; this puts them on the wire
+// as the startTime / duration (and endTime for epics) properties clients have always exchanged.
+class TaskJsonAdapterFactory implements TypeAdapterFactory {
+
+    @Override
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        if (!Task.class.isAssignableFrom(type.getRawType())) {
+            return null;
+        }
+        TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
+        TypeAdapter<JsonElement> elements = gson.getAdapter(JsonElement.class);
+        return new TypeAdapter<>() {
+            @Override
+            public void write(JsonWriter out, T value) throws IOException {
+                if (value == null) {
+                    out.nullValue();
+                    return;
+                }
+                JsonObject json = delegate.toJsonTree(value).getAsJsonObject();
+                Task task = (Task) value;
+                json.add("duration", gson.toJsonTree(task.getDuration(), Duration.class));
+                json.add("startTime", gson.toJsonTree(task.getStartTime(), LocalDateTime.class));
+                if (task instanceof Epic) {
+                    json.add("endTime", gson.toJsonTree(task.getEndTime(), LocalDateTime.class));
+                }
+                elements.write(out, json);
+            }
+
+            @Override
+            public T read(JsonReader in) throws IOException {
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    return null;
+                }
+                JsonElement json = elements.read(in);
+                T value = delegate.fromJsonTree(json);
+                if (value != null && json.isJsonObject()) {
+                    JsonObject object = json.getAsJsonObject();
+                    Task task = (Task) value;
+                    task.setStartTime(gson.fromJson(object.get("startTime"), LocalDateTime.class));
+                    task.setDuration(gson.fromJson(object.get("duration"), Duration.class));
+                }
+                return value;
+            }
+        };
+    }
+}
\ No newline at end of file
@@ -0,0 +1,39 @@
+package manager;
+
+// outcome of one item of a batch call
+public final class BatchResult {
+
+    private final int id;
+    private final String error;
+
+    private BatchResult(int id, String error) {
+        this.id = id;
+        this.error = error;
+    }
+
+    static BatchResult ok(int id) {
+        return new BatchResult(id, null);
+    }
+
+    static BatchResult failed(int id, String error) {
+        return new BatchResult(id, error);
+    }
+
+    // id of the task the item refers to; -1 if an added task was rejected before it got one
+    public int getId() {
+        return id;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return id + (error == null ? ": ok" : ": " + error);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,175 @@
+package manager;
+
+import model.Epic;
+import model.Status;
+import model.SubTask;
+import model.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+// Binary form of a FileBackedTaskManager snapshot. A fixed header is followed by one fixed-width record
+// per task and then by a table of the distinct names and descriptions, which the records refer to by
+// index. Loading maps the file and reads the numbers where they lie, so it costs little more than the
+// page faults; only the strings have to be decoded.
+//
+//   header  magic, version, task count, string count, string table bytes, CRC32 of everything after it
+//   record  id, type, status, 2 unused bytes, epic id, name index, description index,
+//           start minute (8 bytes), duration minutes
+//   string  byte length, UTF-8 bytes; an index of -1 stands for null
+final class BinarySnapshot {
+
+    static final int MAGIC = 0x544D5331;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final int RECORD_SIZE = 32;
+    private static final int NO_STRING = -1;
+    private static final int NO_EPIC = -1;
+    private static final TaskType[] TYPES = TaskType.values();
+    private static final Status[] STATUSES = Status.values();
+
+    private BinarySnapshot() {
+    }
+
+    static boolean isBinary(File file) throws IOException {
+        if (file.length() < HEADER_SIZE) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // keep reading until the four bytes are in
+            }
+            return magic.getInt(0) == MAGIC;
+        }
+    }
+
+    static ByteBuffer encode(Collection<Task> tasks) {
+        Map<String, Integer> indexes = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        int[] names = new int[tasks.size()];
+        int[] descriptions = new int[tasks.size()];
+        int stringBytes = 0;
+        int i = 0;
+        for (Task task : tasks) {
+            for (int field = 0; field < 2; field++) {
+                String value = field == 0 ? task.getName() : task.getDescription();
+                int index = NO_STRING;
+                if (value != null) {
+                    Integer known = indexes.get(value);
+                    if (known == null) {
+                        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                        known = strings.size();
+                        indexes.put(value, known);
+                        strings.add(bytes);
+                        stringBytes += 4 + bytes.length;
+                    }
+                    index = known;
+                }
+                if (field == 0) {
+                    names[i] = index;
+                } else {
+                    descriptions[i] = index;
+                }
+            }
+            i++;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + tasks.size() * RECORD_SIZE + stringBytes);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(tasks.size()).putInt(strings.size()).putInt(stringBytes).putInt(0);
+        i = 0;
+        for (Task task : tasks) {
+            // an epic's time window follows from its subtasks, so it is not stored
+            boolean epic = task instanceof Epic;
+            buffer.putInt(task.getId())
+                    .put((byte) TaskStore.typeOf(task).ordinal())
+                    .put((byte) task.getStatus().ordinal())
+                    .putShort((short) 0)
+                    .putInt(task instanceof SubTask subtask ? subtask.getEpicId() : NO_EPIC)
+                    .putInt(names[i])
+                    .putInt(descriptions[i])
+                    .putLong(epic ? Task.NO_TIME : task.getStartMinute())
+                    .putInt(epic ? -1 : task.getDurationMinutes());
+            i++;
+        }
+        for (byte[] bytes : strings) {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_SIZE, buffer.capacity() - HEADER_SIZE);
+        buffer.putInt(20, (int) crc.getValue());
+        return buffer.flip();
+    }
+
+    static List<Task> read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a task snapshot: " + file);
+            }
+            if (buffer.getInt(4) != VERSION) {
+                throw new IOException("Unsupported snapshot version " + buffer.getInt(4) + ": " + file);
+            }
+            int count = buffer.getInt(8);
+            int stringCount = buffer.getInt(12);
+            int stringBytes = buffer.getInt(16);
+            long expectedSize = HEADER_SIZE + (long) count * RECORD_SIZE + stringBytes;
+            if (count < 0 || stringCount < 0 || stringBytes < 0 || expectedSize != buffer.capacity()) {
+                throw new IOException("Snapshot is truncated: " + file);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(HEADER_SIZE, buffer.capacity() - HEADER_SIZE));
+            if ((int) crc.getValue() != buffer.getInt(20)) {
+                throw new IOException("Snapshot checksum does not match: " + file);
+            }
+
+            String[] strings = new String[stringCount];
+            byte[] bytes = new byte[64];
+            int position = HEADER_SIZE + count * RECORD_SIZE;
+            for (int s = 0; s < stringCount; s++) {
+                int length = buffer.getInt(position);
+                if (length > bytes.length) {
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                }
+                buffer.get(position + 4, bytes, 0, length);
+                strings[s] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+                position += 4 + length;
+            }
+
+            List<Task> tasks = new ArrayList<>(count);
+            for (int r = 0; r < count; r++) {
+                int at = HEADER_SIZE + r * RECORD_SIZE;
+                TaskType type = TYPES[buffer.get(at + 4)];
+                Status status = STATUSES[buffer.get(at + 5)];
+                String name = string(strings, buffer.getInt(at + 12));
+                String description = string(strings, buffer.getInt(at + 16));
+                Task task = switch (type) {
+                    case EPIC -> new Epic(name, description, status, new HashMap<>());
+                    case SUBTASK -> new SubTask(name, description, status, buffer.getInt(at + 8));
+                    default -> new Task(name, description, status);
+                };
+                if (type != TaskType.EPIC) {
+                    task.setStartMinute(buffer.getLong(at + 20));
+                    int duration = buffer.getInt(at + 28);
+                    if (duration >= 0) {
+                        task.setDuration(duration);
+                    }
+                }
+                task.setId(buffer.getInt(at));
+                tasks.add(task);
+            }
+            return tasks;
+        }
+    }
+
+    private static String string(String[] strings, int index) {
+        return index == NO_STRING ? null : strings[index];
+    }
+}
\ No newline at end of file
@@ -0,0 +1,191 @@
+package manager;
+
+import model.Task;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Thread-safe HistoryManager for managers read from many threads at once. A view is not applied to the
+// history right away: it is stamped with a global sequence number and dropped into one of several ring
+// buffers, picked by the recording thread, so concurrent readers almost never touch the same memory.
+// Whoever fills a buffer to its threshold drains all of them into the wrapped history under a lock,
+// replaying the views in sequence order. Every other operation drains first, so getHistory always
+// reflects the views that were recorded before it, in the order they were recorded.
+public final class ConcurrentHistoryManager implements HistoryManager {
+
+    private static final int BUFFER_SIZE = 64;
+    private static final int MAX_BUFFERS = 64;
+    private static final int DRAIN_THRESHOLD = BUFFER_SIZE / 2;
+    private static final Comparator<View> BY_SEQUENCE = Comparator.comparingLong(view -> view.sequence);
+
+    private record View(long sequence, Task task) {
+    }
+
+    private final HistoryManager history;
+    private final Buffer[] buffers;
+    private final AtomicLong sequence = new AtomicLong();
+    private final ReentrantLock drainLock = new ReentrantLock();
+    // only used while holding drainLock
+    private final List<View> pending = new ArrayList<>();
+
+    public ConcurrentHistoryManager(HistoryManager history) {
+        this.history = history;
+        // one buffer per processor, rounded up to a power of two so a buffer is picked with a mask
+        int processors = Runtime.getRuntime().availableProcessors();
+        int count = Math.min(MAX_BUFFERS, Math.max(1, Integer.highestOneBit(processors - 1) << 1));
+        this.buffers = new Buffer[count];
+        for (int i = 0; i < count; i++) {
+            buffers[i] = new Buffer();
+        }
+    }
+
+    @Override
+    public void add(Task task) {
+        if (task == null) return;
+
+        View view = new View(sequence.getAndIncrement(), task);
+        Buffer buffer = buffers[(int) mix(Thread.currentThread().getId()) & (buffers.length - 1)];
+        while (true) {
+            int queued = buffer.offer(view);
+            if (queued < 0) {
+                // the buffer is full: wait for the drain instead of losing the view
+                drainLock.lock();
+                try {
+                    drain();
+                } finally {
+                    drainLock.unlock();
+                }
+            } else {
+                if (queued >= DRAIN_THRESHOLD && drainLock.tryLock()) {
+                    try {
+                        drain();
+                    } finally {
+                        drainLock.unlock();
+                    }
+                }
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void remove(int id) {
+        drainLock.lock();
+        try {
+            drain();
+            history.remove(id);
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        drainLock.lock();
+        try {
+            drain();
+            return history.getHistory();
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getHistory(int offset, int limit) {
+        drainLock.lock();
+        try {
+            drain();
+            return history.getHistory(offset, limit);
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(int id) {
+        drainLock.lock();
+        try {
+            drain();
+            return history.contains(id);
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    // views still waiting in the buffers
+    public int getPending() {
+        int count = 0;
+        for (Buffer buffer : buffers) {
+            count += buffer.size();
+        }
+        return count;
+    }
+
+    // views are taken from each buffer in the order they were published there, which may differ from
+    // the order of their sequence numbers, so the whole batch is sorted before it is applied
+    private void drain() {
+        for (Buffer buffer : buffers) {
+            buffer.drainTo(pending);
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        pending.sort(BY_SEQUENCE);
+        for (View view : pending) {
+            history.add(view.task);
+        }
+        pending.clear();
+    }
+
+    private static long mix(long x) {
+        x = (x ^ (x >>> 33)) * 0xff51afd7ed558ccdL;
+        return x ^ (x >>> 33);
+    }
+
+    // many threads write, only the drainer reads: a writer claims a slot by moving tail, then publishes
+    // the view into it; the drainer stops at the first slot that is claimed but not yet published
+    private static final class Buffer {
+        private final AtomicReferenceArray<View> slots = new AtomicReferenceArray<>(BUFFER_SIZE);
+        private final AtomicLong tail = new AtomicLong();
+        private volatile long head;
+
+        // the number of views in the buffer after this one, or -1 if it is full
+        int offer(View view) {
+            while (true) {
+                long t = tail.get();
+                long size = t - head;
+                if (size >= BUFFER_SIZE) {
+                    return -1;
+                }
+                if (tail.compareAndSet(t, t + 1)) {
+                    slots.lazySet((int) (t & (BUFFER_SIZE - 1)), view);
+                    return (int) size + 1;
+                }
+            }
+        }
+
+        void drainTo(List<View> into) {
+            long h = head;
+            long t = tail.get();
+            while (h < t) {
+                int index = (int) (h & (BUFFER_SIZE - 1));
+                View view = slots.get(index);
+                if (view == null) {
+                    break;
+                }
+                slots.lazySet(index, null);
+                into.add(view);
+                h++;
+            }
+            head = h;
+        }
+
+        int size() {
+            return (int) (tail.get() - head);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,819 @@
+package manager;
+
+import model.Epic;
+import model.Status;
+import model.SubTask;
+import model.Task;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.stream.StreamSupport;
+
+public class ConcurrentTaskManager implements TaskManager {
+    // the timeline is cut into hour-long buckets that are hashed onto a fixed set of locks;
+    // overlapping tasks always share a bucket, so an overlap check and the insert behind it
+    // only exclude writers that could actually collide
+    private static final int STRIPES = 64;
+    private static final long BUCKET_MINUTES = 60;
+
+    private final AtomicInteger counter = new AtomicInteger();
+    // views are recorded without a shared lock; the monitor only pairs up check-then-add and removal
+    private final HistoryManager historyManager = new ConcurrentHistoryManager(Managers.getDefaultHistory());
+    private final ConcurrentHashMap<Integer, Task> tasks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Epic> epics = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, SubTask> subTasks = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Task> prioritizedTasks =
+            new ConcurrentSkipListSet<>(InMemoryTaskManager.TIMELINE_ORDER);
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    // a second copy of the timeline that also indexes the free time between tasks; unlike the skip list
+    // its gaps span stripes, so it is guarded by its own monitor and changed together with the skip list
+    private final Timeline freeTime = new Timeline();
+    // immutable, structurally shared copy of tasks and timeline that readers can take in O(1); every
+    // write publishes copies of the tasks it changed here with a single compare-and-set. The copies are
+    // made under the lock that guards the change, the epic's monitor for an epic and its subtasks and
+    // the id's stripe for a plain task, so two changes to one task are always published in order
+    private final AtomicReference<Version> current = new AtomicReference<>(Version.EMPTY);
+
+    private static final class Version {
+        static final Version EMPTY = new Version(0, PersistentTreeMap.empty(Comparator.naturalOrder()),
+                PersistentTreeMap.empty(InMemoryTaskManager.TIMELINE_ORDER),
+                PersistentTreeMap.empty(InMemoryTaskManager.EPIC_ID_ORDER),
+                PersistentTreeMap.empty(InMemoryTaskManager.EPIC_TIMELINE_ORDER));
+
+        final long number;
+        final PersistentTreeMap<Integer, Task> tasks;
+        final PersistentTreeMap<Task, Task> timeline;
+        // subtasks grouped by epic, by id and, for the scheduled ones, in timeline order
+        final PersistentTreeMap<Task, Task> epicSubtasks;
+        final PersistentTreeMap<Task, Task> epicTimeline;
+
+        Version(long number, PersistentTreeMap<Integer, Task> tasks, PersistentTreeMap<Task, Task> timeline,
+                PersistentTreeMap<Task, Task> epicSubtasks, PersistentTreeMap<Task, Task> epicTimeline) {
+            this.number = number;
+            this.tasks = tasks;
+            this.timeline = timeline;
+            this.epicSubtasks = epicSubtasks;
+            this.epicTimeline = epicTimeline;
+        }
+
+        // drops the removed ids and puts the frozen copies in place of whatever their ids held before
+        Version replace(Collection<Integer> removed, Collection<Task> frozen) {
+            PersistentTreeMap<Integer, Task> newTasks = tasks;
+            PersistentTreeMap<Task, Task> newTimeline = timeline;
+            PersistentTreeMap<Task, Task> newEpicSubtasks = epicSubtasks;
+            PersistentTreeMap<Task, Task> newEpicTimeline = epicTimeline;
+            List<Integer> replaced = new ArrayList<>(removed);
+            for (Task task : frozen) {
+                replaced.add(task.getId());
+            }
+            for (int id : replaced) {
+                Task task = newTasks.get(id);
+                if (task == null) {
+                    continue;
+                }
+                newTasks = newTasks.minus(id);
+                if (onTimeline(task)) {
+                    newTimeline = newTimeline.minus(task);
+                }
+                if (task instanceof SubTask) {
+                    newEpicSubtasks = newEpicSubtasks.minus(task);
+                    newEpicTimeline = newEpicTimeline.minus(task);
+                }
+            }
+            for (Task added : frozen) {
+                newTasks = newTasks.plus(added.getId(), added);
+                if (onTimeline(added)) {
+                    newTimeline = newTimeline.plus(added, added);
+                }
+                if (added instanceof SubTask) {
+                    newEpicSubtasks = newEpicSubtasks.plus(added, added);
+                    if (onTimeline(added)) {
+                        newEpicTimeline = newEpicTimeline.plus(added, added);
+                    }
+                }
+            }
+            return new Version(number + 1, newTasks, newTimeline, newEpicSubtasks, newEpicTimeline);
+        }
+
+        Version cleared() {
+            return new Version(number + 1, EMPTY.tasks, EMPTY.timeline, EMPTY.epicSubtasks, EMPTY.epicTimeline);
+        }
+
+        private static boolean onTimeline(Task task) {
+            return !(task instanceof Epic) && InMemoryTaskManager.isScheduled(task);
+        }
+    }
+
+    public ConcurrentTaskManager() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public TaskSnapshot snapshot() {
+        Version version = current.get();
+        return new TaskSnapshot(version.number, version.tasks, version.timeline.keySet());
+    }
+
+    // a query reads the published version, so it never waits for writers and never sees half a write.
+    // The ordered maps of the version let it start right at the cursor; a time range ends the walk
+    // on the timeline once it is passed, other filters are checked on the way
+    @Override
+    public TaskPage query(TaskQuery query) {
+        Version version = current.get();
+        Task after = query.cursorKey();
+        boolean descending = query.isDescending();
+        if (query.getEpicId() != null) {
+            return TaskPage.collect(query, epicMembers(version, query, after));
+        }
+        if (query.getOrder() == TaskQuery.Order.ID) {
+            return TaskPage.collect(query,
+                    tasksWhile(version.tasks.iteratorAfter(after == null ? null : after.getId(), descending), task -> true));
+        }
+        if (query.getType() == TaskType.EPIC) {
+            return TaskPage.collect(query, Collections.emptyIterator());
+        }
+        long from = query.getFromMinute();
+        long to = query.getToMinute();
+        // range bounds are synthetic keys that sort before every task starting at that minute
+        Task start = after;
+        Task bound = null;
+        if (!descending && from != Task.NO_TIME) {
+            bound = InMemoryTaskManager.timelineProbe(from);
+        } else if (descending && to != Task.NO_TIME) {
+            bound = InMemoryTaskManager.timelineProbe(to);
+        }
+        if (bound != null && (start == null || (InMemoryTaskManager.TIMELINE_ORDER.compare(bound, start) > 0) != descending)) {
+            start = bound;
+        }
+        Predicate<Task> within = descending
+                ? task -> from == Task.NO_TIME || task.getStartMinute() >= from
+                : task -> to == Task.NO_TIME || task.getStartMinute() < to;
+        return TaskPage.collect(query, tasksWhile(version.timeline.iteratorAfter(start, descending), within));
+    }
+
+    // an epic's subtasks as they are in the given version, ordered for the query: the walk starts at the
+    // cursor within the epic's run of the index and ends with it
+    private Iterator<Task> epicMembers(Version version, TaskQuery query, Task after) {
+        int epicId = query.getEpicId();
+        if (!(version.tasks.get(epicId) instanceof Epic)) {
+            return Collections.emptyIterator();
+        }
+        boolean descending = query.isDescending();
+        PersistentTreeMap<Task, Task> index = query.getOrder() == TaskQuery.Order.START_TIME
+                ? version.epicTimeline : version.epicSubtasks;
+        Task start;
+        if (after != null) {
+            start = InMemoryTaskManager.epicKey(epicId, after);
+        } else {
+            start = descending ? InMemoryTaskManager.epicLast(epicId) : InMemoryTaskManager.epicFirst(epicId);
+        }
+        return tasksWhile(index.iteratorAfter(start, descending), task -> ((SubTask) task).getEpicId() == epicId);
+    }
+
+    private static <K> Iterator<Task> tasksWhile(Iterator<Map.Entry<K, Task>> entries, Predicate<Task> within) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(entries, Spliterator.ORDERED), false)
+                .map(Map.Entry::getValue)
+                .takeWhile(within)
+                .iterator();
+    }
+
+    @Override
+    public Map<Integer, Task> getAllTasks() {
+        return Collections.unmodifiableMap(current.get().tasks);
+    }
+
+    @Override
+    public Map<Integer, Task> getAllEpics() {
+        return Collections.unmodifiableMap(epics);
+    }
+
+    @Override
+    public Collection<SubTask> getSubTasks() {
+        return Collections.unmodifiableCollection(subTasks.values());
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return historyManager.getHistory();
+    }
+
+    @Override
+    public List<Task> getHistory(int offset, int limit) {
+        return historyManager.getHistory(offset, limit);
+    }
+
+    @Override
+    public TreeSet<Task> getPrioritizedTasks() {
+        TreeSet<Task> copy = new TreeSet<>(InMemoryTaskManager.TIMELINE_ORDER);
+        copy.addAll(current.get().timeline.keySet());
+        return copy;
+    }
+
+    // a weakly consistent view of the live timeline: it never blocks writers and reflects them as they land
+    @Override
+    public NavigableSet<Task> getTasksBetween(LocalDateTime from, LocalDateTime to) {
+        return Collections.unmodifiableNavigableSet(InMemoryTaskManager.window(prioritizedTasks, from, to));
+    }
+
+    @Override
+    public LocalDateTime findFreeSlot(Duration duration, LocalDateTime earliest) {
+        long start = InMemoryTaskManager.slotStart(earliest);
+        long minutes = InMemoryTaskManager.slotMinutes(duration);
+        synchronized (freeTime) {
+            return Task.toDateTime(freeTime.firstFreeMinute(start, minutes));
+        }
+    }
+
+    // the slot is only reserved once the task is in, so a writer that takes it first makes us look again
+    @Override
+    public void addTaskAutoScheduled(Task task, LocalDateTime earliest) {
+        Duration duration = InMemoryTaskManager.autoScheduledDuration(task);
+        LocalDateTime from = earliest;
+        while (true) {
+            task.setStartTime(findFreeSlot(duration, from));
+            try {
+                addTask(task);
+                return;
+            } catch (IllegalArgumentException e) {
+                from = task.getStartTime();
+            }
+        }
+    }
+
+    @Override
+    public Task getTask(int id) {
+        Task task = tasks.get(id);
+        historyManager.add(task);
+        return task;
+    }
+
+    @Override
+    public void addTask(Task task) {
+        String error = add(task);
+        if (error != null) {
+            Diagnostics.warn(error);
+        }
+    }
+
+    // returns why the task was not added, or null; an overlap is thrown like in addTask
+    private String add(Task task) {
+        if (task.getId() == -1) {
+            task.setId(counter.getAndIncrement());
+        } else {
+            counter.accumulateAndGet(task.getId() + 1, Math::max);
+        }
+
+        // an explicit id may already be taken; the id's stripe keeps two adds of it from both getting in
+        BitSet locked = task instanceof Epic ? lock(task.getId()) : lock(task.getId(), task);
+        try {
+            if (tasks.containsKey(task.getId())) {
+                return "Task with this ID already exists";
+            }
+            if (task instanceof Epic epic) {
+                // subtasks can be attached as soon as the epic is in, and wait for its copy to go out first
+                synchronized (epic) {
+                    tasks.put(epic.getId(), epic);
+                    epics.put(epic.getId(), epic);
+                    publish(epic);
+                }
+            } else if (task instanceof SubTask subtask) {
+                if (!attachSubtask(subtask)) {
+                    return "Epic with this ID does not exist";
+                }
+            } else {
+                replaceInTimeline(null, task);
+                tasks.put(task.getId(), task);
+                publish(task);
+            }
+        } finally {
+            unlock(locked);
+        }
+        return null;
+    }
+
+    @Override
+    public Task peek(int id) {
+        return tasks.get(id);
+    }
+
+    @Override
+    public boolean exists(int id) {
+        return tasks.containsKey(id);
+    }
+
+    @Override
+    public void updateTask(int id, Task task) {
+        OperationResult result = update(id, task);
+        if (result.isSuccess()) {
+            Diagnostics.debug("Successfully updated!");
+        } else {
+            result.reportFailure();
+        }
+    }
+
+    @Override
+    public OperationResult update(int id, Task task) {
+        Task oldTask = tasks.get(id);
+        if (oldTask == null) {
+            return OperationResult.notFound(id, "Update failed!");
+        }
+        if (oldTask.getClass() != task.getClass()) {
+            return OperationResult.typeMismatch(id, "Error: Can't update " + oldTask.getClass().getSimpleName() +
+                    " to " + task.getClass().getSimpleName());
+        }
+        task.setId(id);
+
+        if (task instanceof SubTask subtask && !epics.containsKey(subtask.getEpicId())) {
+            return OperationResult.rejected(id, "Epic with this ID does not exist");
+        }
+
+        boolean updated;
+        if (task instanceof Epic epic) {
+            updated = replaceEpic((Epic) oldTask, epic);
+        } else {
+            BitSet locked = lock(id, oldTask, task);
+            try {
+                updated = task instanceof SubTask subtask
+                        ? moveSubtask((SubTask) oldTask, subtask)
+                        : replaceTask(oldTask, task);
+            } catch (IllegalArgumentException e) {
+                return OperationResult.conflict(id, e.getMessage());
+            } finally {
+                unlock(locked);
+            }
+        }
+        if (!updated) {
+            return OperationResult.notFound(id, "Update failed!");
+        }
+        synchronized (historyManager) {
+            if (historyManager.contains(id)) {
+                historyManager.add(task);
+            }
+        }
+        return OperationResult.updated(id);
+    }
+
+    @Override
+    public void deleteByID(int id) {
+        boolean epic = epics.containsKey(id);
+        OperationResult result = delete(id);
+        if (!result.isSuccess()) {
+            result.reportFailure();
+        } else if (epic) {
+            Diagnostics.debug("Epic removed along with its ", result.getCascaded(), " subtask(s).");
+        } else {
+            Diagnostics.debug("Successfully deleted!");
+        }
+    }
+
+    @Override
+    public OperationResult delete(int id) {
+        Task task = tasks.get(id);
+
+        if (task == null) {
+            return OperationResult.notFound(id, "Delete failed! No task with this ID");
+        }
+
+        if (task instanceof Epic) {
+            return deleteEpic(id);
+        }
+
+        BitSet locked = lock(id, task);
+        boolean deleted;
+        try {
+            deleted = task instanceof SubTask subtask ? detachSubtask(subtask) : removeTask(task);
+        } finally {
+            unlock(locked);
+        }
+        if (!deleted) {
+            return OperationResult.notFound(id, "Delete failed! No task with this ID");
+        }
+        forget(id);
+        return OperationResult.deleted(id, 0);
+    }
+
+    @Override
+    public void getAllSubTasks(int epicId) {
+        Epic epic = epics.get(epicId);
+        if (epic != null) {
+            System.out.println("Epic contains the following subtasks: ");
+            synchronized (epic) {
+                epic.subtasks.values().stream()
+                        .map(Object::toString)
+                        .forEach(System.out::println);
+            }
+        } else {
+            System.out.println("Not an Epic");
+        }
+    }
+
+    @Override
+    public void updateStatus(int id, Status status) {
+        OperationResult result = changeStatus(id, status);
+        if (result.isSuccess()) {
+            Diagnostics.debug("Task ID ", id, " status successfully updated.");
+        } else {
+            result.reportFailure();
+        }
+    }
+
+    @Override
+    public OperationResult changeStatus(int id, Status status) {
+        Task task = tasks.get(id);
+
+        if (task == null) {
+            return OperationResult.notFound(id, "Task with ID " + id + " not found.");
+        }
+
+        if (task instanceof Epic) {
+            return OperationResult.rejected(id, "Epic status cannot be changed manually — it is calculated automatically.");
+        }
+
+        boolean changed = task instanceof SubTask subtask
+                ? changeSubtaskStatus(subtask, status)
+                : changeTaskStatus(task, status);
+        if (!changed) {
+            return OperationResult.notFound(id, "Task with ID " + id + " not found.");
+        }
+        return OperationResult.updated(id);
+    }
+
+    // a batch is applied item by item, each under the stripes of its own slot, so a large batch never
+    // holds the whole timeline and other writers keep going; epic counters make every status change O(1)
+    @Override
+    public List<BatchResult> addAll(Collection<? extends Task> batch) {
+        List<BatchResult> results = new ArrayList<>(batch.size());
+        for (Task task : batch) {
+            if (task == null) {
+                results.add(BatchResult.failed(-1, "Task is missing"));
+                continue;
+            }
+            String error;
+            try {
+                error = add(task);
+            } catch (IllegalArgumentException e) {
+                error = e.getMessage();
+            }
+            results.add(error == null ? BatchResult.ok(task.getId()) : BatchResult.failed(task.getId(), error));
+        }
+        return results;
+    }
+
+    @Override
+    public List<BatchResult> updateAll(Map<Integer, ? extends Task> batch) {
+        List<BatchResult> results = new ArrayList<>(batch.size());
+        for (Map.Entry<Integer, ? extends Task> entry : batch.entrySet()) {
+            int id = entry.getKey();
+            if (entry.getValue() == null) {
+                results.add(BatchResult.failed(id, "Task is missing"));
+                continue;
+            }
+            results.add(update(id, entry.getValue()).toBatchResult());
+        }
+        return results;
+    }
+
+    @Override
+    public List<BatchResult> updateStatuses(Map<Integer, Status> statuses) {
+        List<BatchResult> results = new ArrayList<>(statuses.size());
+        for (Map.Entry<Integer, Status> entry : statuses.entrySet()) {
+            results.add(changeStatus(entry.getKey(), entry.getValue()).toBatchResult());
+        }
+        return results;
+    }
+
+    @Override
+    public void deleteAllTasks() {
+        BitSet all = new BitSet(STRIPES);
+        all.set(0, STRIPES);
+        lock(all);
+        try {
+            tasks.clear();
+            epics.clear();
+            subTasks.clear();
+            prioritizedTasks.clear();
+            synchronized (freeTime) {
+                freeTime.clear();
+            }
+            current.updateAndGet(Version::cleared);
+        } finally {
+            unlock(all);
+        }
+    }
+
+    @Override
+    public void printAllTasks() {
+        for (Map.Entry<Integer, Task> entry : tasks.entrySet()) {
+            System.out.println(entry.getKey() + " " + entry.getValue());
+        }
+    }
+
+    @Override
+    public void printHistory() {
+        for (Task task : getHistory()) {
+            System.out.println(task);
+        }
+    }
+
+    // callers must hold the locks covering the task's time slot
+    public boolean checkIntersection(Task task) {
+        if (!InMemoryTaskManager.isScheduled(task)) {
+            return false;
+        }
+        Task candidate = prioritizedTasks.lower(InMemoryTaskManager.timelineProbe(task.getEndMinute()));
+        if (candidate != null && candidate.getEndMinute() > task.getStartMinute()) {
+            throw new IllegalArgumentException("Task overlaps in time with another task");
+        }
+        return false;
+    }
+
+    // swaps oldTask for task in the timeline, or leaves the timeline untouched if task collides;
+    // callers must hold the stripes covering both time slots
+    private void replaceInTimeline(Task oldTask, Task task) {
+        if (oldTask != null) {
+            removeFromTimeline(oldTask);
+        }
+        try {
+            checkIntersection(task);
+        } catch (IllegalArgumentException e) {
+            if (oldTask != null) {
+                restoreTimeline(oldTask);
+            }
+            throw e;
+        }
+        restoreTimeline(task);
+    }
+
+    private boolean replaceTask(Task oldTask, Task task) {
+        // the task may have been replaced or deleted while we were waiting for the stripes
+        if (tasks.get(task.getId()) != oldTask) {
+            return false;
+        }
+        replaceInTimeline(oldTask, task);
+        tasks.put(task.getId(), task);
+        publish(task);
+        return true;
+    }
+
+    private boolean changeTaskStatus(Task task, Status status) {
+        BitSet locked = lock(task.getId());
+        try {
+            if (tasks.get(task.getId()) != task) {
+                return false;
+            }
+            task.setStatus(status);
+            publish(task);
+            return true;
+        } finally {
+            unlock(locked);
+        }
+    }
+
+    private boolean removeTask(Task task) {
+        if (!tasks.remove(task.getId(), task)) {
+            return false;
+        }
+        removeFromTimeline(task);
+        publish(List.of(task.getId()));
+        return true;
+    }
+
+    // Subtasks are changed under their epic's monitor on top of the stripes, so that a cascade delete
+    // of the epic never interleaves with them. An epic that was replaced while we waited for its
+    // monitor is simply looked up again.
+
+    private boolean attachSubtask(SubTask subtask) {
+        while (true) {
+            Epic epic = epics.get(subtask.getEpicId());
+            if (epic == null) {
+                return false;
+            }
+            synchronized (epic) {
+                if (epics.get(epic.getId()) != epic) {
+                    continue;
+                }
+                replaceInTimeline(null, subtask);
+                epic.addSubtask(subtask.getId(), subtask);
+                epic.setStatus(epic.calculateStatus());
+                tasks.put(subtask.getId(), subtask);
+                subTasks.put(subtask.getId(), subtask);
+                publish(subtask, epic);
+                return true;
+            }
+        }
+    }
+
+    private boolean detachSubtask(SubTask subtask) {
+        while (true) {
+            Epic epic = epics.get(subtask.getEpicId());
+            if (epic == null) {
+                return false;
+            }
+            synchronized (epic) {
+                if (epics.get(epic.getId()) != epic) {
+                    continue;
+                }
+                if (!tasks.remove(subtask.getId(), subtask)) {
+                    return false;
+                }
+                removeFromTimeline(subtask);
+                subTasks.remove(subtask.getId(), subtask);
+                epic.removeSubTask(subtask.getId());
+                epic.setStatus(epic.calculateStatus());
+                publish(List.of(subtask.getId()), epic);
+                return true;
+            }
+        }
+    }
+
+    private boolean moveSubtask(SubTask oldSubtask, SubTask subtask) {
+        while (true) {
+            Epic from = epics.get(oldSubtask.getEpicId());
+            Epic to = epics.get(subtask.getEpicId());
+            if (from == null || to == null) {
+                return false;
+            }
+            // two epic monitors are always taken in id order
+            Epic first = from.getId() <= to.getId() ? from : to;
+            Epic second = first == from ? to : from;
+            synchronized (first) {
+                synchronized (second) {
+                    if (epics.get(from.getId()) != from || epics.get(to.getId()) != to) {
+                        continue;
+                    }
+                    if (tasks.get(subtask.getId()) != oldSubtask) {
+                        return false;
+                    }
+                    replaceInTimeline(oldSubtask, subtask);
+                    from.removeSubTask(subtask.getId());
+                    to.addSubtask(subtask.getId(), subtask);
+                    from.setStatus(from.calculateStatus());
+                    to.setStatus(to.calculateStatus());
+                    tasks.put(subtask.getId(), subtask);
+                    subTasks.put(subtask.getId(), subtask);
+                    if (from == to) {
+                        publish(subtask, from);
+                    } else {
+                        publish(subtask, from, to);
+                    }
+                    return true;
+                }
+            }
+        }
+    }
+
+    private boolean changeSubtaskStatus(SubTask subtask, Status status) {
+        while (true) {
+            Epic epic = epics.get(subtask.getEpicId());
+            if (epic == null) {
+                return false;
+            }
+            synchronized (epic) {
+                if (epics.get(epic.getId()) != epic) {
+                    continue;
+                }
+                if (tasks.get(subtask.getId()) != subtask) {
+                    return false;
+                }
+                Status oldStatus = subtask.getStatus();
+                subtask.setStatus(status);
+                epic.subtaskStatusChanged(oldStatus, status);
+                epic.setStatus(epic.calculateStatus());
+                publish(subtask, epic);
+                return true;
+            }
+        }
+    }
+
+    // the new epic is not visible to anyone yet, so taking its monitor second cannot deadlock; holding
+    // it keeps subtask changes that find the new epic from overtaking its first copy
+    private boolean replaceEpic(Epic oldEpic, Epic epic) {
+        synchronized (oldEpic) {
+            synchronized (epic) {
+                if (epics.get(epic.getId()) != oldEpic) {
+                    return false;
+                }
+                epic.inheritSubtasks(oldEpic);
+                epic.setStatus(epic.calculateStatus());
+                tasks.put(epic.getId(), epic);
+                epics.put(epic.getId(), epic);
+                publish(epic);
+                return true;
+            }
+        }
+    }
+
+    private OperationResult deleteEpic(int id) {
+        int removed;
+        while (true) {
+            Epic epic = epics.get(id);
+            if (epic == null) {
+                return OperationResult.notFound(id, "Delete failed! No task with this ID");
+            }
+            synchronized (epic) {
+                if (!epics.remove(id, epic)) {
+                    continue;
+                }
+                tasks.remove(id);
+                for (Task subtask : epic.subtasks.values()) {
+                    removeFromTimeline(subtask);
+                    tasks.remove(subtask.getId(), subtask);
+                    subTasks.remove(subtask.getId(), subtask);
+                    forget(subtask.getId());
+                }
+                removed = epic.subtasks.size();
+                List<Integer> gone = new ArrayList<>(epic.subtasks.keySet());
+                gone.add(id);
+                publish(gone);
+                break;
+            }
+        }
+        forget(id);
+        return OperationResult.deleted(id, removed);
+    }
+
+    private void publish(Task... changed) {
+        publish(List.of(), changed);
+    }
+
+    // callers hold the locks that keep the changed tasks still while they are copied
+    private void publish(List<Integer> removed, Task... changed) {
+        List<Task> frozen = new ArrayList<>(changed.length);
+        for (Task task : changed) {
+            frozen.add(TaskSnapshot.freeze(task));
+        }
+        current.updateAndGet(version -> version.replace(removed, frozen));
+    }
+
+    private void removeFromTimeline(Task task) {
+        if (InMemoryTaskManager.isScheduled(task)) {
+            prioritizedTasks.remove(task);
+            synchronized (freeTime) {
+                freeTime.remove(task);
+            }
+        }
+    }
+
+    private void restoreTimeline(Task task) {
+        if (InMemoryTaskManager.isScheduled(task)) {
+            prioritizedTasks.add(task);
+            synchronized (freeTime) {
+                freeTime.add(task);
+            }
+        }
+    }
+
+    private void forget(int id) {
+        synchronized (historyManager) {
+            historyManager.remove(id);
+        }
+    }
+
+    // locks the stripe of the task id together with every stripe the given time slots touch
+    private BitSet lock(int id, Task... slots) {
+        BitSet locked = new BitSet(STRIPES);
+        locked.set(Math.floorMod(id, STRIPES));
+        for (Task slot : slots) {
+            if (!InMemoryTaskManager.isScheduled(slot)) {
+                continue;
+            }
+            long first = bucket(slot.getStartMinute());
+            long last = Math.max(first, bucket(slot.getEndMinute() - 1));
+            if (last - first + 1 >= STRIPES) {
+                locked.set(0, STRIPES);
+                break;
+            }
+            for (long b = first; b <= last; b++) {
+                locked.set((int) Math.floorMod(b, (long) STRIPES));
+            }
+        }
+        lock(locked);
+        return locked;
+    }
+
+    // stripes are always acquired in ascending order, so writers cannot deadlock each other
+    private void lock(BitSet locked) {
+        for (int i = locked.nextSetBit(0); i >= 0; i = locked.nextSetBit(i + 1)) {
+            stripes[i].lock();
+        }
+    }
+
+    private void unlock(BitSet locked) {
+        for (int i = locked.nextSetBit(0); i >= 0; i = locked.nextSetBit(i + 1)) {
+            stripes[i].unlock();
+        }
+    }
+
+    private static long bucket(long minute) {
+        return Math.floorDiv(minute, BUCKET_MINUTES);
+    }
+}
\ No newline at end of file
@@ -2,64 +2,194 @@ package manager;
 
 import model.Task;
 
-import java.util.LinkedList;
+import java.util.Arrays;
 
+// Doubly linked list of tasks, at most one per id, kept in parallel arrays instead of node objects.
+// Every entry lives in a slot: prev and next hold slot numbers, -1 ending the list, and slots that are
+// not in use are chained into a free list through next. An open-addressing table maps task ids to
+// slots. Adding, moving a task to the tail and removing it only write ints into existing arrays, so
+// they allocate nothing until the list outgrows its capacity.
 public class CustomLinkedList {
 
-    public static class Node<T> {
-        T data;
-        Node<T> next;
-        Node<T> prev;
+    private static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 16;
 
-        public Node(T data, Node<T> next, Node<T> prev) {
-            this.data = data;
-            this.next = next;
-            this.prev = prev;
+    private Task[] tasks;
+    private long[] addedAt;
+    private int[] prev;
+    private int[] next;
+    private int head = NONE;
+    private int tail = NONE;
+    private int free;
+    private int size;
+
+    // id -> slot, linear probing; a slot of NONE marks an empty bucket
+    private int[] keys;
+    private int[] values;
+
+    public CustomLinkedList() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int id) {
+        return find(id) != NONE;
+    }
+
+    // appends the task, or moves its id to the tail if it is already in the list
+    public void addLast(Task task, long addedAt) {
+        int id = task.getId();
+        int slot = find(id);
+        if (slot == NONE) {
+            if (free == NONE) {
+                allocate(tasks.length * 2);
+            }
+            slot = free;
+            free = next[slot];
+            put(id, slot);
+            size++;
+        } else {
+            unlink(slot);
         }
+        tasks[slot] = task;
+        this.addedAt[slot] = addedAt;
+        link(slot);
     }
 
-    Node<Task> head;
-    Node<Task> tail;
+    public boolean remove(int id) {
+        int slot = delete(id);
+        if (slot == NONE) {
+            return false;
+        }
+        unlink(slot);
+        release(slot);
+        return true;
+    }
 
-    public void remove(Node<Task> node) {
+    public long firstAddedAt() {
+        return head == NONE ? Long.MAX_VALUE : addedAt[head];
+    }
 
-        if (node == null) return;
+    public Task removeFirst() {
+        if (head == NONE) {
+            return null;
+        }
+        Task task = tasks[head];
+        remove(task.getId());
+        return task;
+    }
 
-        if (node.prev != null) {
-            node.prev.next = node.next;
-        } else {
-            head = node.next;
+    public Task[] toArray() {
+        Task[] result = new Task[size];
+        int i = 0;
+        for (int slot = head; slot != NONE; slot = next[slot]) {
+            result[i++] = tasks[slot];
         }
+        return result;
+    }
 
-        if (node.next != null) {
-            node.next.prev = node.prev;
+    private void link(int slot) {
+        prev[slot] = tail;
+        next[slot] = NONE;
+        if (tail != NONE) {
+            next[tail] = slot;
         } else {
-            tail = node.prev;
+            head = slot;
         }
+        tail = slot;
     }
 
-    public Node<Task> addLast(Task task) {
-        Node<Task> newNode = new Node<>(task, null, tail);
+    private void unlink(int slot) {
+        if (prev[slot] != NONE) {
+            next[prev[slot]] = next[slot];
+        } else {
+            head = next[slot];
+        }
 
-        if (tail != null) {
-            tail.next = newNode;
+        if (next[slot] != NONE) {
+            prev[next[slot]] = prev[slot];
         } else {
-            head = newNode;
+            tail = prev[slot];
         }
+    }
 
-        tail = newNode;
-        return newNode;
+    // a freed slot must not keep its task reachable
+    private void release(int slot) {
+        tasks[slot] = null;
+        next[slot] = free;
+        free = slot;
+        size--;
     }
 
-    public LinkedList<Task> toList() {
-        LinkedList<Task> result = new LinkedList<>();
-        Node<Task> cur = head;
-        while (cur != null) {
+    // grows the slot arrays, chaining the new slots into the free list, and rebuilds the id table
+    // at twice the slot count so it stays at most half full
+    private void allocate(int capacity) {
+        int old = tasks == null ? 0 : tasks.length;
+        tasks = tasks == null ? new Task[capacity] : Arrays.copyOf(tasks, capacity);
+        addedAt = addedAt == null ? new long[capacity] : Arrays.copyOf(addedAt, capacity);
+        prev = prev == null ? new int[capacity] : Arrays.copyOf(prev, capacity);
+        next = next == null ? new int[capacity] : Arrays.copyOf(next, capacity);
+        for (int slot = old; slot < capacity; slot++) {
+            next[slot] = slot + 1 < capacity ? slot + 1 : NONE;
+        }
+        free = old;
 
-            result.add(cur.data);
-            cur = cur.next;
+        keys = new int[capacity * 2];
+        values = new int[capacity * 2];
+        Arrays.fill(values, NONE);
+        for (int slot = head; slot != NONE; slot = next[slot]) {
+            put(tasks[slot].getId(), slot);
         }
-        return result;
     }
 
+    private int bucket(int id) {
+        int h = id * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (keys.length - 1);
+    }
+
+    private int find(int id) {
+        for (int i = bucket(id); values[i] != NONE; i = (i + 1) & (keys.length - 1)) {
+            if (keys[i] == id) {
+                return values[i];
+            }
+        }
+        return NONE;
+    }
+
+    private void put(int id, int slot) {
+        int i = bucket(id);
+        while (values[i] != NONE) {
+            i = (i + 1) & (keys.length - 1);
+        }
+        keys[i] = id;
+        values[i] = slot;
+    }
+
+    // removes the id and shifts later entries of its probe run back, so lookups never need tombstones
+    private int delete(int id) {
+        int mask = keys.length - 1;
+        int i = bucket(id);
+        while (values[i] != NONE && keys[i] != id) {
+            i = (i + 1) & mask;
+        }
+        int slot = values[i];
+        if (slot == NONE) {
+            return NONE;
+        }
+        int hole = i;
+        for (int j = (i + 1) & mask; values[j] != NONE; j = (j + 1) & mask) {
+            int home = bucket(keys[j]);
+            // the entry at j may fill the hole unless its home lies cyclically in (hole, j]
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        values[hole] = NONE;
+        return slot;
+    }
 }
\ No newline at end of file
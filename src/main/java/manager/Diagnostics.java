@@ -0,0 +1,176 @@
+package manager;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Level-gated diagnostics for the managers and the HTTP handlers. The overloads take the pieces of a
+// message instead of the finished string and only join them once the level is known to be enabled, so
+// a disabled call is a field read and a comparison: no string is built and nothing is allocated. Int
+// arguments have their own overloads for the same reason. Enabled messages go to a Sink, by default one
+// that hands them to a background thread which writes them to stdout in batches.
+public final class Diagnostics {
+
+    public enum Level {
+        DEBUG,
+        INFO,
+        WARN,
+        ERROR,
+        OFF
+    }
+
+    public interface Sink {
+        void write(Level level, String message);
+    }
+
+    private static volatile Level threshold = configuredLevel();
+    private static volatile Sink sink = async(System.out, 8192);
+
+    private Diagnostics() {
+    }
+
+    // -Dtaskmanager.log.level, in any case; an unknown level must not keep the class from loading, since
+    // every manager and handler logs through it
+    private static Level configuredLevel() {
+        String value = System.getProperty("taskmanager.log.level", "INFO");
+        try {
+            return Level.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown taskmanager.log.level " + value + ", using INFO");
+            return Level.INFO;
+        }
+    }
+
+    public static void setLevel(Level level) {
+        threshold = level;
+    }
+
+    public static Level getLevel() {
+        return threshold;
+    }
+
+    public static Sink getSink() {
+        return sink;
+    }
+
+    public static void setSink(Sink newSink) {
+        sink = newSink;
+    }
+
+    public static boolean isEnabled(Level level) {
+        return level.compareTo(threshold) >= 0 && level != Level.OFF;
+    }
+
+    public static void debug(String message) {
+        log(Level.DEBUG, message);
+    }
+
+    public static void debug(String prefix, Object value) {
+        log(Level.DEBUG, prefix, value);
+    }
+
+    public static void debug(String prefix, int value, String suffix) {
+        log(Level.DEBUG, prefix, value, suffix);
+    }
+
+    public static void debug(String prefix, int value, String middle, Object last) {
+        log(Level.DEBUG, prefix, value, middle, last);
+    }
+
+    public static void warn(String message) {
+        log(Level.WARN, message);
+    }
+
+    public static void warn(String prefix, int value, String suffix) {
+        log(Level.WARN, prefix, value, suffix);
+    }
+
+    public static void warn(String prefix, Object value, String middle, Object last) {
+        log(Level.WARN, prefix, value, middle, last);
+    }
+
+    public static void log(Level level, String message) {
+        if (isEnabled(level)) {
+            sink.write(level, message);
+        }
+    }
+
+    public static void log(Level level, String prefix, Object value) {
+        if (isEnabled(level)) {
+            sink.write(level, prefix + value);
+        }
+    }
+
+    public static void log(Level level, String prefix, int value, String suffix) {
+        if (isEnabled(level)) {
+            sink.write(level, prefix + value + suffix);
+        }
+    }
+
+    public static void log(Level level, String prefix, int value, String middle, Object last) {
+        if (isEnabled(level)) {
+            sink.write(level, prefix + value + middle + last);
+        }
+    }
+
+    public static void log(Level level, String prefix, Object value, String middle, Object last) {
+        if (isEnabled(level)) {
+            sink.write(level, prefix + value + middle + last);
+        }
+    }
+
+    // queues messages for a daemon thread that prints whatever has piled up with a single write and flush;
+    // when the queue is full the message is dropped and counted rather than holding up the caller
+    public static AsyncSink async(PrintStream out, int capacity) {
+        return new AsyncSink(out, capacity);
+    }
+
+    public static final class AsyncSink implements Sink {
+        private final BlockingQueue<String> queue;
+        private final AtomicLong dropped = new AtomicLong();
+        private final PrintStream out;
+
+        private AsyncSink(PrintStream out, int capacity) {
+            this.out = out;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            Thread writer = new Thread(this::run, "diagnostics");
+            writer.setDaemon(true);
+            writer.start();
+        }
+
+        @Override
+        public void write(Level level, String message) {
+            if (!queue.offer(message)) {
+                dropped.incrementAndGet();
+            }
+        }
+
+        public long getDropped() {
+            return dropped.get();
+        }
+
+        private void run() {
+            List<String> batch = new ArrayList<>();
+            StringBuilder text = new StringBuilder();
+            while (true) {
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException e) {
+                    return;
+                }
+                queue.drainTo(batch);
+                for (String message : batch) {
+                    text.append(message).append(System.lineSeparator());
+                }
+                out.print(text);
+                out.flush();
+                batch.clear();
+                text.setLength(0);
+            }
+        }
+    }
+}
\ No newline at end of file
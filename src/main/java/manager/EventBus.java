@@ -0,0 +1,273 @@
+package manager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// Carries TaskEvents from a manager to consumers that run on their own threads. Every subscription has
+// its own bounded ring buffer and drains it in batches, so publishing costs a copy into each ring and a
+// slow consumer only ever holds up its own subscription. What happens when a ring is full is up to the
+// subscription's Backpressure.
+public final class EventBus implements AutoCloseable {
+
+    public enum Backpressure {
+        // the publisher waits until the consumer makes room
+        BLOCK,
+        // the event is discarded and counted
+        DROP,
+        // the pending event for the same task is taken out of the ring and the two go back in at its end,
+        // folded into one, so nothing is delivered out of order; without one, the publisher waits
+        COALESCE
+    }
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    public Subscription subscribe(String name, int capacity, Backpressure backpressure,
+                                  Consumer<List<TaskEvent>> consumer) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        Subscription subscription = new Subscription(name, capacity, backpressure, consumer);
+        subscriptions.add(subscription);
+        subscription.thread.start();
+        return subscription;
+    }
+
+    public void publish(TaskEvent event) {
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(event);
+        }
+    }
+
+    public List<Subscription> getSubscriptions() {
+        return List.copyOf(subscriptions);
+    }
+
+    // waits until every event published so far has been handled by every consumer
+    public boolean awaitDrained(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Subscription subscription : subscriptions) {
+            if (!subscription.awaitDrained(deadline)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // consumers finish what is already in their rings before their threads stop
+    @Override
+    public void close() {
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+        subscriptions.clear();
+    }
+
+    public static final class Subscription {
+        private final String name;
+        private final Backpressure backpressure;
+        private final Consumer<List<TaskEvent>> consumer;
+        private final TaskEvent[] ring;
+        // sequence numbers: events before head have been taken by the consumer, those before tail
+        // have been published, and those before handled have been fully processed
+        private long head;
+        private long tail;
+        private long handled;
+        private long dropped;
+        private long coalesced;
+        private long maxLag;
+        private boolean closed;
+        // where the pending event of each task sits, for COALESCE only
+        private final Map<Long, Long> pending = new HashMap<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private final Condition notFull = lock.newCondition();
+        private final Condition drained = lock.newCondition();
+        private final Thread thread;
+
+        private Subscription(String name, int capacity, Backpressure backpressure, Consumer<List<TaskEvent>> consumer) {
+            this.name = name;
+            this.backpressure = backpressure;
+            this.consumer = consumer;
+            this.ring = new TaskEvent[capacity];
+            this.thread = new Thread(this::drain, "events-" + name);
+            thread.setDaemon(true);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        // events published to this subscription and not yet handled by its consumer
+        public long getLag() {
+            lock.lock();
+            try {
+                return tail - handled;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // the highest lag seen so far
+        public long getMaxLag() {
+            lock.lock();
+            try {
+                return maxLag;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public long getHandled() {
+            lock.lock();
+            try {
+                return handled;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public long getDropped() {
+            lock.lock();
+            try {
+                return dropped;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public long getCoalesced() {
+            lock.lock();
+            try {
+                return coalesced;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void offer(TaskEvent event) {
+            lock.lock();
+            try {
+                while (tail - head == ring.length && !closed) {
+                    if (backpressure == Backpressure.DROP) {
+                        dropped++;
+                        return;
+                    }
+                    if (backpressure == Backpressure.COALESCE && coalesceIntoPending(event)) {
+                        return;
+                    }
+                    notFull.awaitUninterruptibly();
+                }
+                if (closed) {
+                    return;
+                }
+                ring[(int) (tail % ring.length)] = event;
+                if (backpressure == Backpressure.COALESCE) {
+                    pending.put(event.coalescingKey(), tail);
+                }
+                tail++;
+                maxLag = Math.max(maxLag, tail - handled);
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean coalesceIntoPending(TaskEvent event) {
+            Long sequence = pending.get(event.coalescingKey());
+            if (sequence == null || sequence < head || event.getType() == TaskEvent.Type.CLEARED) {
+                return false;
+            }
+            TaskEvent merged = ring[(int) (sequence % ring.length)].coalesce(event);
+            // the events behind the pending one move up a slot, and their positions with them
+            for (long s = sequence; s < tail - 1; s++) {
+                TaskEvent next = ring[(int) ((s + 1) % ring.length)];
+                ring[(int) (s % ring.length)] = next;
+                pending.replace(next.coalescingKey(), s + 1, s);
+            }
+            ring[(int) ((tail - 1) % ring.length)] = merged;
+            pending.put(merged.coalescingKey(), tail - 1);
+            coalesced++;
+            return true;
+        }
+
+        private void drain() {
+            List<TaskEvent> batch = new ArrayList<>(ring.length);
+            while (true) {
+                lock.lock();
+                try {
+                    while (head == tail && !closed) {
+                        notEmpty.awaitUninterruptibly();
+                    }
+                    if (head == tail) {
+                        return;
+                    }
+                    for (; head < tail; head++) {
+                        int slot = (int) (head % ring.length);
+                        TaskEvent event = ring[slot];
+                        ring[slot] = null;
+                        if (backpressure == Backpressure.COALESCE) {
+                            pending.remove(event.coalescingKey(), head);
+                        }
+                        batch.add(event);
+                    }
+                    notFull.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                try {
+                    consumer.accept(batch);
+                } catch (RuntimeException e) {
+                    Diagnostics.warn("Consumer ", name, " failed: ", e.getMessage());
+                }
+                lock.lock();
+                try {
+                    handled += batch.size();
+                    drained.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                batch.clear();
+            }
+        }
+
+        private boolean awaitDrained(long deadline) throws InterruptedException {
+            lock.lock();
+            try {
+                long target = tail;
+                while (handled < target) {
+                    long left = deadline - System.nanoTime();
+                    if (left <= 0) {
+                        return false;
+                    }
+                    drained.awaitNanos(left);
+                }
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void close() {
+            lock.lock();
+            try {
+                closed = true;
+                notEmpty.signalAll();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -5,85 +5,773 @@ import model.Status;
 import model.SubTask;
 import model.Task;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.HashMap;
+import java.util.*;
 import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 public class FileBackedTaskManager extends InMemoryTaskManager {
+
+    // how far a journal record has got when the mutation that wrote it returns; a manager with an event
+    // bus writes its journal later, on the subscription's thread, and can only offer ASYNC and WRITE_BEHIND
+    public enum Durability {
+        // handed to the operating system; survives the process, but not a power failure
+        ASYNC,
+        // forced to disk by every mutation before it returns
+        SYNC,
+        // forced to disk before the mutation returns, but writers that arrive together share one force
+        GROUP_COMMIT,
+        // mutations only mark their tasks dirty, and a background flusher journals the latest state of
+        // each dirty task once per window, so a burst of changes to one task costs a single record; what
+        // changed during the last window is lost if the process dies
+        WRITE_BEHIND
+    }
+
+    private static final int SAVE_EVENTS_CAPACITY = 1024;
+    private static final Duration DEFAULT_GROUP_COMMIT_DELAY = Duration.ofMillis(2);
+    private static final int DEFAULT_GROUP_COMMIT_RECORDS = 64;
     File file;
     static boolean isLoading = false;
+    // every change made after the snapshot in file was written, as JournalRecords: PUT with the task,
+    // DELETE with an id, or CLEAR; a mutation appends its records instead of rewriting the snapshot
+    private final File journalFile;
+    // a checkpoint renames the journal to the next numbered segment, <file>.journal.N, so that writers go
+    // on with a fresh one while the snapshot is written; segments are deleted once a snapshot covering
+    // them is in place, and replayed in order before the journal otherwise
+    private final String segmentPrefix;
+    // the highest segment number in use, guarded by journalLock
+    private int lastSegment;
+    private final Object journalLock = new Object();
+    private BufferedOutputStream journal;
+    private FileChannel journalChannel;
+    private volatile Durability durability = Durability.ASYNC;
+    private volatile long groupCommitNanos = DEFAULT_GROUP_COMMIT_DELAY.toNanos();
+    private volatile int groupCommitRecords = DEFAULT_GROUP_COMMIT_RECORDS;
+    // records are numbered as they are appended; those up to durable have been forced to disk
+    private volatile long appended;
+    private long durable;
+    private boolean forcing;
+    private final ReentrantLock commitLock = new ReentrantLock();
+    private final Condition committed = commitLock.newCondition();
+    private final Condition batchFull = commitLock.newCondition();
+    private final AtomicLong forces = new AtomicLong();
+    // write-behind state: ids changed since the last flush, most recently changed last, and whether
+    // everything was cleared in between; both are guarded by the manager's lock
+    private final LinkedHashSet<Integer> dirty = new LinkedHashSet<>();
+    private boolean dirtyCleared;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushPending = new AtomicBoolean();
+    private ScheduledExecutorService flusher;
+    // bytes appended since the journal was last rolled
+    private volatile long journalBytes;
+    private final ReentrantLock checkpointLock = new ReentrantLock();
+    private final AtomicBoolean checkpointPending = new AtomicBoolean();
+    private ScheduledExecutorService checkpointer;
+    private long maxJournalBytes;
+    // a manager loaded from the file continues its journal; a new one starts both files over
+    private boolean continuesJournal;
+    private final EventBus events;
 
     public FileBackedTaskManager(File file) {
+        this(file, null);
+    }
+
+    // with a bus, a mutation only publishes its event and the journal is written on the subscription's
+    // thread, once for everything that arrived in a batch; the records are rendered under the manager's
+    // lock, so the mutations below run under it, while the journal is written outside of it
+    public FileBackedTaskManager(File file, EventBus events) {
+        super(events);
         this.file = file;
+        this.journalFile = new File(file.getPath() + ".journal");
+        this.segmentPrefix = journalFile.getName() + ".";
+        List<File> segments = rolledSegments();
+        this.lastSegment = segments.isEmpty() ? 0 : segmentNumber(segments.get(segments.size() - 1));
+        this.events = events;
+        if (events != null && !isLoading) {
+            journalEvents();
+        }
     }
 
     public static FileBackedTaskManager loadFromFile(File file) throws IOException {
+        return loadFromFile(file, null);
+    }
+
+    public static FileBackedTaskManager loadFromFile(File file, EventBus events) throws IOException {
         isLoading = true;
         try {
             if (file.createNewFile()) {
-                System.out.println("File not found. New one created" + file.getName());
+                Diagnostics.log(Diagnostics.Level.INFO, "File not found. New one created ", file.getName());
             }
         } catch (IOException e) {
-            System.out.println("Cannot find the file: " + e.getMessage());
+            Diagnostics.log(Diagnostics.Level.WARN, "Cannot find the file: ", e.getMessage());
         }
 
 
-        FileBackedTaskManager manager = new FileBackedTaskManager(file);
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            while (br.ready()) {
-                String line = br.readLine();
-                Task task = fromString(line);
-                manager.addTask(task);
-            }
+        FileBackedTaskManager manager;
+        boolean intact;
+        try {
+            manager = new FileBackedTaskManager(file, events);
+            // snapshots are written in the binary format, but a CSV file is still read, as an import
+            List<Task> loaded = BinarySnapshot.isBinary(file) ? BinarySnapshot.read(file) : readCsv(file);
+            manager.addAll(loaded);
+            intact = manager.replayJournal();
+        } finally {
+            isLoading = false;
+        }
+        manager.continuesJournal = true;
+        if (!intact) {
+            // records appended after the torn one would make it a damaged record in the middle of the
+            // journal, so what could be recovered is folded into a new snapshot and the journal starts over
+            manager.checkpoint();
+        }
+        if (events != null) {
+            manager.journalEvents();
         }
-        isLoading = false;
         return manager;
     }
 
     @Override
     public void addTask(Task task) {
-        super.addTask(task);
-        if (!isLoading) {
-            save();
-        }
+        durably(() -> {
+            super.addTask(task);
+            return null;
+        });
+    }
+
+    // updateTask, updateStatus and deleteByID go through these as well
+    @Override
+    public OperationResult update(int id, Task task) {
+        return durably(() -> super.update(id, task));
     }
 
     @Override
-    public void updateTask(int id, Task task) {
-        super.updateTask(id, task);
-        save();
+    public OperationResult changeStatus(int id, Status status) {
+        return durably(() -> super.changeStatus(id, status));
     }
 
     @Override
-    public void updateStatus(int id, Status status) {
-        super.updateStatus(id, status);
-        save();
+    public OperationResult delete(int id) {
+        return durably(() -> super.delete(id));
     }
 
     @Override
-    public void deleteByID(int id) {
-        super.deleteByID(id);
-        save();
+    public List<BatchResult> addAll(Collection<? extends Task> tasks) {
+        return durably(() -> super.addAll(tasks));
+    }
+
+    @Override
+    public List<BatchResult> updateAll(Map<Integer, ? extends Task> tasks) {
+        return durably(() -> super.updateAll(tasks));
+    }
+
+    @Override
+    public List<BatchResult> updateStatuses(Map<Integer, Status> statuses) {
+        return durably(() -> super.updateStatuses(statuses));
     }
 
     @Override
     public void deleteAllTasks() {
-        super.deleteAllTasks();
-        save();
+        durably(() -> {
+            super.deleteAllTasks();
+            return null;
+        });
+    }
+
+    public void setDurability(Durability durability) {
+        setDurability(durability, DEFAULT_GROUP_COMMIT_DELAY, DEFAULT_GROUP_COMMIT_RECORDS);
+    }
+
+    // a group commit forces the journal once maxRecords are waiting for it, or maxDelay after the first
+    // of them arrived. Write-behind flushes every maxDelay, which bounds the loss window, and early once
+    // maxRecords tasks are dirty; with a bus the subscription already writes behind, so it behaves like
+    // ASYNC. With a bus the journal is written after the mutation has returned, so SYNC and GROUP_COMMIT,
+    // which promise the record is on disk by then, are refused
+    public void setDurability(Durability durability, Duration maxDelay, int maxRecords) {
+        if (maxRecords < 1) {
+            throw new IllegalArgumentException("Group commit size must be positive: " + maxRecords);
+        }
+        if (events != null && (durability == Durability.SYNC || durability == Durability.GROUP_COMMIT)) {
+            throw new IllegalArgumentException(durability + " durability cannot be kept with an event bus");
+        }
+        ScheduledExecutorService stopping;
+        synchronized (this) {
+            this.groupCommitNanos = maxDelay.toNanos();
+            this.groupCommitRecords = maxRecords;
+            this.durability = durability;
+            stopping = flusher;
+            flusher = null;
+            if (durability == Durability.WRITE_BEHIND && events == null) {
+                flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "write-behind-" + file.getName());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                long millis = Math.max(1, maxDelay.toMillis());
+                flusher.scheduleWithFixedDelay(this::flushDirty, millis, millis, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (stopping != null) {
+            stop(stopping);
+        }
+        // whatever the previous flusher left behind is written now
+        flushDirty();
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    // how many times the journal has been forced to disk
+    public long getJournalForces() {
+        return forces.get();
+    }
+
+    // how many records have been appended to the journal
+    public long getJournalRecords() {
+        return appended;
+    }
+
+    // the mutation runs under the manager's lock; waiting for its records to reach the disk does not,
+    // so that the writers behind it can join the same group commit
+    private <T> T durably(Supplier<T> mutation) {
+        T result;
+        long written;
+        synchronized (this) {
+            result = mutation.get();
+            written = appended;
+        }
+        if (durability == Durability.GROUP_COMMIT) {
+            awaitDurable(written);
+        }
+        return result;
+    }
+
+    // without a bus each change is journaled right away, still under the lock of the mutation
+    @Override
+    protected void changed(TaskEvent.Type type, Task task) {
+        if (isLoading || events != null) {
+            return;
+        }
+        if (durability == Durability.WRITE_BEHIND) {
+            markDirty(type, task);
+            return;
+        }
+        byte[] record = switch (type) {
+            case CLEARED -> JournalRecords.clear();
+            case DELETED -> JournalRecords.delete(task.getId());
+            // an epic's status follows from its subtasks and is recalculated on replay
+            case STATUS_CHANGED -> task instanceof Epic ? null : JournalRecords.put(task);
+            default -> JournalRecords.put(task);
+        };
+        if (record != null) {
+            append(List.of(record));
+        }
+    }
+
+    private void markDirty(TaskEvent.Type type, Task task) {
+        if (type == TaskEvent.Type.CLEARED) {
+            dirty.clear();
+            dirtyCleared = true;
+        } else if (!(type == TaskEvent.Type.STATUS_CHANGED && task instanceof Epic)) {
+            dirty.remove(task.getId());
+            dirty.add(task.getId());
+            if (dirty.size() >= groupCommitRecords) {
+                requestFlush();
+            }
+        }
+    }
+
+    private void requestFlush() {
+        ScheduledExecutorService running = flusher;
+        if (running != null && flushPending.compareAndSet(false, true)) {
+            running.execute(() -> {
+                flushPending.set(false);
+                flushDirty();
+            });
+        }
+    }
+
+    // the dirty tasks are rendered under the manager's lock and journaled outside of it: deletions
+    // first, so that their slots are free again, then the latest state of every other dirty task
+    private void flushDirty() {
+        flushLock.lock();
+        try {
+            List<byte[]> records;
+            synchronized (this) {
+                if (dirty.isEmpty() && !dirtyCleared) {
+                    return;
+                }
+                records = new ArrayList<>(dirty.size() + 1);
+                if (dirtyCleared) {
+                    records.add(JournalRecords.clear());
+                }
+                List<byte[]> puts = new ArrayList<>(dirty.size());
+                for (int id : dirty) {
+                    Task current = peek(id);
+                    if (current != null) {
+                        puts.add(JournalRecords.put(current));
+                    } else if (!dirtyCleared) {
+                        records.add(JournalRecords.delete(id));
+                    }
+                }
+                records.addAll(puts);
+                dirty.clear();
+                dirtyCleared = false;
+            }
+            append(records);
+        } catch (RuntimeException e) {
+            Diagnostics.log(Diagnostics.Level.WARN, "Write-behind flush failed: ", e.getMessage());
+        } finally {
+            flushLock.unlock();
+        }
     }
 
-    private void save() {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
-            for (Task task : getAllTasks().values()) {
+    // an event may be stale by the time it is handled, so the task's current state is journaled instead;
+    // as every change has an event of its own, the last record for a task always matches the manager
+    private void journalEvents() {
+        events.subscribe("file", SAVE_EVENTS_CAPACITY, EventBus.Backpressure.COALESCE, batch -> {
+            List<byte[]> records = new ArrayList<>(batch.size());
+            synchronized (this) {
+                for (TaskEvent event : batch) {
+                    if (event.getType() == TaskEvent.Type.CLEARED) {
+                        records.add(JournalRecords.clear());
+                    } else if (event.getType() != TaskEvent.Type.VIEWED) {
+                        Task current = peek(event.getTaskId());
+                        if (current == null) {
+                            records.add(JournalRecords.delete(event.getTaskId()));
+                        } else if (!(current instanceof Epic && event.getType() == TaskEvent.Type.STATUS_CHANGED)) {
+                            records.add(JournalRecords.put(current));
+                        }
+                    }
+                }
+            }
+            append(records);
+        });
+    }
+
+    // writes the current state as the new snapshot and drops the journal it covers; writers are held up
+    // only while the point-in-time view is taken and the journal is rolled, not while the file is written
+    public void checkpoint() {
+        checkpointLock.lock();
+        try {
+            TaskSnapshot state;
+            int covered;
+            synchronized (this) {
+                state = snapshot();
+                synchronized (journalLock) {
+                    covered = rollJournal();
+                }
+            }
+            write(state.getAllTasks().values());
+            deleteSegments(covered);
+        } finally {
+            checkpointLock.unlock();
+        }
+    }
+
+    // checkpoints on a background thread once maxJournalBytes have been journaled since the last
+    // checkpoint, and every interval if anything was journaled at all; 0 or null switch a limit off
+    public synchronized void startCheckpointing(long maxJournalBytes, Duration interval) {
+        if (checkpointer != null) {
+            throw new IllegalStateException("Checkpointing is already running");
+        }
+        checkpointer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "checkpoint-" + file.getName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.maxJournalBytes = maxJournalBytes;
+        if (interval != null) {
+            long millis = interval.toMillis();
+            checkpointer.scheduleWithFixedDelay(() -> {
+                if (journalBytes > 0) {
+                    requestCheckpoint();
+                }
+            }, millis, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void close() {
+        ScheduledExecutorService stoppingFlusher;
+        ScheduledExecutorService stoppingCheckpointer;
+        synchronized (this) {
+            stoppingFlusher = flusher;
+            stoppingCheckpointer = checkpointer;
+            flusher = null;
+            checkpointer = null;
+        }
+        if (stoppingFlusher != null) {
+            stop(stoppingFlusher);
+        }
+        flushDirty();
+        if (stoppingCheckpointer != null) {
+            stop(stoppingCheckpointer);
+        }
+        synchronized (journalLock) {
+            closeJournal();
+        }
+    }
+
+    private static void stop(ScheduledExecutorService executor) {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void requestCheckpoint() {
+        ScheduledExecutorService running = checkpointer;
+        if (running != null && checkpointPending.compareAndSet(false, true)) {
+            running.execute(() -> {
+                try {
+                    checkpoint();
+                } catch (RuntimeException e) {
+                    Diagnostics.log(Diagnostics.Level.WARN, "Checkpoint failed: ", e.getMessage());
+                } finally {
+                    checkpointPending.set(false);
+                }
+            });
+        }
+    }
+
+    // only renames the journal, so writers wait for no more than a metadata update; segments that an
+    // earlier checkpoint did not get to delete stay where they are and are covered by this one as well.
+    // Returns the number of the newest segment, which the snapshot taken along with the roll covers
+    private int rollJournal() {
+        closeJournal();
+        if (journalFile.exists()) {
+            try {
+                Files.move(journalFile.toPath(), segment(lastSegment + 1).toPath());
+            } catch (IOException e) {
+                throw new ManagerSaveException("Error when saving to file");
+            }
+            lastSegment++;
+        }
+        journalBytes = 0;
+        return lastSegment;
+    }
+
+    private File segment(int number) {
+        return new File(file.getPath() + ".journal." + number);
+    }
+
+    private static int segmentNumber(File segment) {
+        String name = segment.getName();
+        return Integer.parseInt(name.substring(name.lastIndexOf('.') + 1));
+    }
+
+    // rolled segments on disk, oldest first
+    private List<File> rolledSegments() {
+        File[] found = file.getAbsoluteFile().getParentFile().listFiles((dir, name) ->
+                name.startsWith(segmentPrefix) && name.length() > segmentPrefix.length()
+                        && name.length() - segmentPrefix.length() < 10
+                        && name.substring(segmentPrefix.length()).chars().allMatch(Character::isDigit));
+        List<File> segments = found == null ? new ArrayList<>() : new ArrayList<>(List.of(found));
+        segments.sort(Comparator.comparingInt(FileBackedTaskManager::segmentNumber));
+        return segments;
+    }
+
+    private void deleteSegments(int upTo) {
+        for (File segment : rolledSegments()) {
+            if (segmentNumber(segment) <= upTo && !segment.delete()) {
+                throw new ManagerSaveException("Error when saving to file");
+            }
+        }
+    }
+
+    private void append(List<byte[]> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        synchronized (journalLock) {
+            if (journal == null) {
+                // a new manager starts out empty, and so do its files
+                if (!continuesJournal) {
+                    write(List.of());
+                    deleteSegments(lastSegment);
+                    continuesJournal = true;
+                    openJournal(false);
+                } else {
+                    openJournal(true);
+                }
+            }
+            try {
+                for (byte[] record : records) {
+                    journal.write(record);
+                    journalBytes += record.length;
+                }
+                journal.flush();
+                appended += records.size();
+                if (durability == Durability.SYNC) {
+                    journalChannel.force(false);
+                    forces.incrementAndGet();
+                    markDurable(appended);
+                }
+            } catch (IOException e) {
+                throw new ManagerSaveException("Error when saving to file");
+            }
+        }
+        if (durability == Durability.GROUP_COMMIT) {
+            commitLock.lock();
+            try {
+                if (appended - durable >= groupCommitRecords) {
+                    batchFull.signal();
+                }
+            } finally {
+                commitLock.unlock();
+            }
+        }
+        if (maxJournalBytes > 0 && journalBytes >= maxJournalBytes) {
+            requestCheckpoint();
+        }
+    }
+
+    // the first writer to find no force under way leads the group: it waits for the group to fill up or
+    // for the delay to pass, then forces everything appended so far, which covers every waiting writer
+    private void awaitDurable(long record) {
+        commitLock.lock();
+        try {
+            while (durable < record) {
+                if (forcing) {
+                    committed.awaitUninterruptibly();
+                    continue;
+                }
+                forcing = true;
+                try {
+                    long left = groupCommitNanos;
+                    while (left > 0 && appended - durable < groupCommitRecords) {
+                        try {
+                            left = batchFull.awaitNanos(left);
+                        } catch (InterruptedException e) {
+                            // the group is cut short, but the writer still gets its force
+                            Thread.currentThread().interrupt();
+                            break;
+                        }
+                    }
+                    long target = appended;
+                    commitLock.unlock();
+                    try {
+                        forceJournal();
+                    } finally {
+                        commitLock.lock();
+                    }
+                    durable = Math.max(durable, target);
+                } finally {
+                    forcing = false;
+                    committed.signalAll();
+                }
+            }
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    private void forceJournal() {
+        FileChannel channel;
+        synchronized (journalLock) {
+            channel = journalChannel;
+        }
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.force(false);
+            forces.incrementAndGet();
+        } catch (ClosedChannelException e) {
+            // the journal was rolled or closed meanwhile, and forced before that
+        } catch (IOException e) {
+            throw new ManagerSaveException("Error when saving to file");
+        }
+    }
+
+    private void markDurable(long record) {
+        commitLock.lock();
+        try {
+            durable = Math.max(durable, record);
+            committed.signalAll();
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    private void openJournal(boolean append) {
+        try {
+            FileOutputStream out = new FileOutputStream(journalFile, append);
+            journalChannel = out.getChannel();
+            journal = new BufferedOutputStream(out);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Error when saving to file");
+        }
+    }
+
+    // records that were only handed to the operating system are forced before the file is let go, so
+    // that group commits waiting for them can finish
+    private void closeJournal() {
+        if (journal != null) {
+            try {
+                journal.flush();
+                if (durability != Durability.ASYNC) {
+                    journalChannel.force(false);
+                    forces.incrementAndGet();
+                    markDurable(appended);
+                }
+                journal.close();
+            } catch (IOException e) {
+                throw new ManagerSaveException("Error when saving to file");
+            } finally {
+                journal = null;
+                journalChannel = null;
+            }
+        }
+    }
+
+    // a run of PUTs for distinct tasks is applied as one batch: addAll journals a subtask before its epic,
+    // and a write-behind flush journals only the final states, which fit together as a whole but not
+    // necessarily one by one. A torn record at the end of a file, left by a crash during a write, is
+    // skipped; a record damaged anywhere else fails the load. Returns false if a torn record was skipped
+    private boolean replayJournal() throws IOException {
+        // rolled segments are left only by checkpoints that did not finish; their records end in the state
+        // the new snapshot would have had, so it is safe to replay whichever snapshot made it to disk.
+        // A segment can end in a torn record if the checkpoint that recovered from it died as well
+        boolean intact = true;
+        for (File segment : rolledSegments()) {
+            intact &= replayJournal(segment);
+        }
+        return replayJournal(journalFile) && intact;
+    }
+
+    private boolean replayJournal(File journalFile) throws IOException {
+        if (!journalFile.exists()) {
+            return true;
+        }
+        JournalRecords.Contents contents = JournalRecords.read(journalFile);
+        Map<Integer, Task> puts = new LinkedHashMap<>();
+        for (JournalRecords.Entry entry : contents.entries()) {
+            switch (entry.kind()) {
+                case JournalRecords.PUT -> {
+                    if (puts.containsKey(entry.id())) {
+                        applyPuts(puts);
+                    }
+                    puts.put(entry.id(), entry.task());
+                }
+                case JournalRecords.DELETE -> {
+                    applyPuts(puts);
+                    delete(entry.id());
+                }
+                default -> {
+                    applyPuts(puts);
+                    deleteAllTasks();
+                }
+            }
+        }
+        applyPuts(puts);
+        if (contents.torn()) {
+            Diagnostics.log(Diagnostics.Level.WARN, "Journal ends in a torn record, which was skipped: ", journalFile.getName());
+        }
+        return !contents.torn();
+    }
+
+    // new epics come first, so that updated and new subtasks can refer to them; updates come before the
+    // other new tasks, which may take the slots that the updated tasks have left
+    private void applyPuts(Map<Integer, Task> puts) {
+        List<Task> newEpics = new ArrayList<>();
+        Map<Integer, Task> updated = new LinkedHashMap<>();
+        List<Task> added = new ArrayList<>();
+        for (Task task : puts.values()) {
+            if (exists(task.getId())) {
+                updated.put(task.getId(), task);
+            } else if (task instanceof Epic) {
+                newEpics.add(task);
+            } else {
+                added.add(task);
+            }
+        }
+        if (!newEpics.isEmpty()) {
+            addAll(newEpics);
+        }
+        if (!updated.isEmpty()) {
+            updateAll(updated);
+        }
+        if (!added.isEmpty()) {
+            addAll(added);
+        }
+        puts.clear();
+    }
+
+    private static List<Task> readCsv(File file) throws IOException {
+        List<Task> loaded = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    loaded.add(fromString(line));
+                }
+            }
+        }
+        return loaded;
+    }
+
+    // writes the tasks as they are right now in the CSV format, one line per task, which loadFromFile
+    // reads back as well
+    public void exportCsv(File target) {
+        TaskSnapshot state;
+        synchronized (this) {
+            state = snapshot();
+        }
+        writeAtomically(target, out -> {
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out));
+            for (Task task : state.getAllTasks().values()) {
                 writer.write(task.toString());
                 writer.newLine();
             }
+            writer.flush();
+        });
+    }
+
+    private void write(Collection<Task> tasks) {
+        ByteBuffer snapshot = BinarySnapshot.encode(tasks);
+        writeAtomically(file, out -> out.write(snapshot.array(), 0, snapshot.limit()));
+    }
+
+    private interface FileContent {
+        void writeTo(FileOutputStream out) throws IOException;
+    }
+
+    // the content is written next to the target and renamed over it, so a crash leaves either the old
+    // file or the new one, never a partial file
+    private static void writeAtomically(File target, FileContent content) {
+        File temp = new File(target.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            content.writeTo(out);
+            out.getChannel().force(true);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Error when saving to file");
+        }
+        try {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         } catch (IOException e) {
             throw new ManagerSaveException("Error when saving to file");
         }
@@ -93,12 +781,12 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
 
         String[] parts = value.split(",");
         if (parts[1].equals(TaskType.TASK.toString())) {
-            Task task = new Task(parts[2], parts[4], Status.valueOf(parts[3]), LocalDateTime.parse(parts[5]), Duration.ofMinutes(Integer.parseInt(parts[6])));
+            Task task = new Task(parts[2], parts[4], Status.valueOf(parts[3]), parseTime(parts[5]), parseDuration(parts[6]));
             // TO DO try / catch
             task.setId(Integer.parseInt(parts[0]));
             return task;
         } else if (parts[1].equals(TaskType.SUBTASK.toString())) {
-            SubTask subtask = new SubTask(parts[2], parts[4], Status.valueOf(parts[3]),LocalDateTime.parse(parts[6]), Duration.ofMinutes(Integer.parseInt(parts[7])), Integer.parseInt(parts[5]));
+            SubTask subtask = new SubTask(parts[2], parts[4], Status.valueOf(parts[3]), parseTime(parts[6]), parseDuration(parts[7]), Integer.parseInt(parts[5]));
             // TO DO try / catch
             subtask.setId(Integer.parseInt(parts[0]));
             return subtask;
@@ -111,6 +799,15 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
         return null;
     }
 
+    // tasks without a start time or duration are written with null in those fields
+    private static LocalDateTime parseTime(String value) {
+        return value.equals("null") ? null : LocalDateTime.parse(value);
+    }
+
+    private static Duration parseDuration(String value) {
+        return value.equals("null") ? null : Duration.ofMinutes(Integer.parseInt(value));
+    }
+
     public static void main(String[] args) throws IOException {
 
         File file = new File("demo_java_kanban.csv");
@@ -0,0 +1,183 @@
+package manager;
+
+// The free stretches between the tasks of a timeline, ordered by start minute, where every subtree knows
+// its longest stretch. Finding the first stretch long enough for a task is a single walk down the tree:
+// subtrees whose longest gap is too short are never entered. Gap ends are exclusive; the gaps before the
+// first task and after the last one are open-ended, so an empty timeline is one gap covering everything.
+final class GapIndex {
+
+    private static final class Node {
+        final long start;
+        long end;
+        long maxLength;
+        int height = 1;
+        Node left;
+        Node right;
+
+        Node(long start, long end) {
+            this.start = start;
+            this.end = end;
+            this.maxLength = length(start, end);
+        }
+    }
+
+    private Node root;
+
+    GapIndex() {
+        clear();
+    }
+
+    void clear() {
+        root = new Node(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    void add(long start, long end) {
+        root = insert(root, start, end);
+    }
+
+    void remove(long start) {
+        root = delete(root, start);
+    }
+
+    // first minute at or after earliest where the given number of minutes is free
+    long firstFit(long earliest, long minutes) {
+        Node containing = floor(earliest);
+        if (containing != null && remaining(earliest, containing.end) >= minutes) {
+            return earliest;
+        }
+        Node next = firstFitAfter(root, earliest, minutes);
+        // the open-ended gap after the last task always fits
+        return next.start;
+    }
+
+    private static Node firstFitAfter(Node node, long after, long minutes) {
+        if (node == null || node.maxLength < minutes) {
+            return null;
+        }
+        if (node.start <= after) {
+            return firstFitAfter(node.right, after, minutes);
+        }
+        Node left = firstFitAfter(node.left, after, minutes);
+        if (left != null) {
+            return left;
+        }
+        if (length(node.start, node.end) >= minutes) {
+            return node;
+        }
+        return firstFitAfter(node.right, after, minutes);
+    }
+
+    private Node floor(long minute) {
+        Node node = root;
+        Node found = null;
+        while (node != null) {
+            if (node.start <= minute) {
+                found = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return found;
+    }
+
+    private static long length(long start, long end) {
+        return start == Long.MIN_VALUE || end == Long.MAX_VALUE ? Long.MAX_VALUE : end - start;
+    }
+
+    private static long remaining(long from, long end) {
+        return end == Long.MAX_VALUE ? Long.MAX_VALUE : end - from;
+    }
+
+    private static Node insert(Node node, long start, long end) {
+        if (node == null) {
+            return new Node(start, end);
+        }
+        if (start < node.start) {
+            node.left = insert(node.left, start, end);
+        } else if (start > node.start) {
+            node.right = insert(node.right, start, end);
+        } else {
+            node.end = end;
+        }
+        return balance(node);
+    }
+
+    private static Node delete(Node node, long start) {
+        if (node == null) {
+            return null;
+        }
+        if (start < node.start) {
+            node.left = delete(node.left, start);
+        } else if (start > node.start) {
+            node.right = delete(node.right, start);
+        } else {
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            Node successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            Node replacement = new Node(successor.start, successor.end);
+            replacement.right = delete(node.right, successor.start);
+            replacement.left = node.left;
+            node = replacement;
+        }
+        return balance(node);
+    }
+
+    private static Node balance(Node node) {
+        int diff = height(node.left) - height(node.right);
+        if (diff > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        } else if (diff < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        update(node);
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
+    }
+
+    private static void update(Node node) {
+        node.height = Math.max(height(node.left), height(node.right)) + 1;
+        long max = length(node.start, node.end);
+        if (node.left != null) {
+            max = Math.max(max, node.left.maxLength);
+        }
+        if (node.right != null) {
+            max = Math.max(max, node.right.maxLength);
+        }
+        node.maxLength = max;
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+}
\ No newline at end of file
@@ -11,6 +11,12 @@ public interface HistoryManager {
 
     void remove(int id);
 
+    // oldest first; an immutable list that callers may hold on to
     List<Task> getHistory();
 
+    // at most limit tasks of getHistory, starting at offset
+    List<Task> getHistory(int offset, int limit);
+
+    boolean contains(int id);
+
 }
\ No newline at end of file
@@ -2,32 +2,114 @@ package manager;
 
 import model.Task;
 
-import java.util.HashMap;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
+// The history keeps at most capacity tasks, oldest first. Adding to a full history evicts the head of
+// the list, and entries older than maxAge, when one is set, are dropped from the head as well: the list
+// is ordered by view time, so both checks only ever look at its first entry.
+// getHistory hands out one immutable array-backed list per change, so repeated reads between changes
+// return the same instance and copy nothing.
 public class InMemoryHistoryManager implements HistoryManager {
 
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+
     private final CustomLinkedList history = new CustomLinkedList();
-    private final Map<Integer, CustomLinkedList.Node<Task>> map = new HashMap<>();
+    private final int capacity;
+    private final long maxAgeMillis;
+    private final Clock clock;
+    private List<Task> snapshot = List.of();
+    private boolean snapshotStale;
+
+    public InMemoryHistoryManager() {
+        this(UNBOUNDED);
+    }
+
+    public InMemoryHistoryManager(int capacity) {
+        this(capacity, null, Clock.systemUTC());
+    }
+
+    // maxAge may be null for entries that never expire
+    public InMemoryHistoryManager(int capacity, Duration maxAge, Clock clock) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("History capacity must be positive: " + capacity);
+        }
+        if (maxAge != null && (maxAge.isNegative() || maxAge.isZero())) {
+            throw new IllegalArgumentException("History max age must be positive: " + maxAge);
+        }
+        this.capacity = capacity;
+        this.maxAgeMillis = maxAge == null ? Long.MAX_VALUE : maxAge.toMillis();
+        this.clock = clock;
+    }
 
     @Override
     public void add(Task task) {
         if (task == null) return;
 
-        remove(task.getId());
-        CustomLinkedList.Node<Task> node = history.addLast(task);
-        map.put(task.getId(), node);
+        long now = clock.millis();
+        expire(now);
+        // a task viewed again only moves to the tail, so it never needs room of its own
+        if (!history.contains(task.getId())) {
+            while (history.size() >= capacity) {
+                history.removeFirst();
+            }
+        }
+        history.addLast(task, now);
+        snapshotStale = true;
 
     }
 
     @Override
     public void remove(int id) {
-        history.remove(map.get(id));
+        if (history.remove(id)) {
+            snapshotStale = true;
+        }
     }
 
     @Override
     public List<Task> getHistory() {
-        return history.toList();
+        expire(clock.millis());
+        if (snapshotStale) {
+            snapshot = Collections.unmodifiableList(Arrays.asList(history.toArray()));
+            snapshotStale = false;
+        }
+        return snapshot;
+    }
+
+    @Override
+    public List<Task> getHistory(int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit must not be negative");
+        }
+        List<Task> all = getHistory();
+        int from = Math.min(offset, all.size());
+        return all.subList(from, from + Math.min(limit, all.size() - from));
+    }
+
+    @Override
+    public boolean contains(int id) {
+        expire(clock.millis());
+        return history.contains(id);
+    }
+
+    public int size() {
+        return history.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private void expire(long now) {
+        if (maxAgeMillis == Long.MAX_VALUE) {
+            return;
+        }
+        while (history.size() > 0 && now - history.firstAddedAt() >= maxAgeMillis) {
+            history.removeFirst();
+            snapshotStale = true;
+        }
     }
 }
\ No newline at end of file
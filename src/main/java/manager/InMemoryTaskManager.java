@@ -5,155 +5,369 @@ import model.Status;
 import model.SubTask;
 import model.Task;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class InMemoryTaskManager implements TaskManager {
     private int counter = 0;
     private final HistoryManager historyManager = Managers.getDefaultHistory();
-    HashMap<Integer, Task> tasks = new HashMap<>();
-    TreeSet<Task> prioritizedTasks = new TreeSet<>(Comparator.comparing(Task::getStartTime));
+    TaskStore<Task> tasks = new TaskStore<>();
+    // per-type partitions of tasks, kept in step with it by every mutation
+    TaskStore<Epic> epics = new TaskStore<>();
+    TaskStore<SubTask> subTasks = new TaskStore<>();
+    // tasks in the timeline never overlap, so ordering by start time also orders them by end time;
+    // duration breaks ties so that zero-length tasks sort before the task starting at the same moment
+    static final Comparator<Task> TIMELINE_ORDER = Comparator.comparingLong(Task::getStartMinute)
+            .thenComparingInt(Task::getDurationMinutes)
+            .thenComparingInt(Task::getId);
+    Timeline prioritizedTasks = new Timeline();
+    // subtasks grouped by epic, within an epic by id or in timeline order, so that a page of an epic's
+    // subtasks starts with a seek to the cursor rather than a sort of the whole epic
+    static final Comparator<Task> EPIC_ID_ORDER = Comparator.comparingInt((Task task) -> ((SubTask) task).getEpicId())
+            .thenComparingInt(Task::getId);
+    static final Comparator<Task> EPIC_TIMELINE_ORDER = Comparator.comparingInt((Task task) -> ((SubTask) task).getEpicId())
+            .thenComparing(TIMELINE_ORDER);
+    private final TreeSet<Task> epicSubtasks = new TreeSet<>(EPIC_ID_ORDER);
+    // only the scheduled subtasks
+    private final TreeSet<Task> epicTimeline = new TreeSet<>(EPIC_TIMELINE_ORDER);
+    // bumped by every write; the last snapshot is reused until it changes
+    private long version = 0;
+    private TaskSnapshot snapshot;
+    // copies of the tasks as the last snapshot saw them, and the ids written since; the next snapshot
+    // copies only those again and shares the rest, so it costs as much as the writes in between
+    private PersistentTreeMap<Integer, Task> frozenTasks = PersistentTreeMap.empty(Comparator.naturalOrder());
+    private PersistentTreeMap<Task, Task> frozenTimeline = PersistentTreeMap.empty(TIMELINE_ORDER);
+    private final Set<Integer> unfrozen = new HashSet<>();
+    private static final int HISTORY_EVENTS_CAPACITY = 1024;
+    // every change is published here when set; the history is then kept by a subscription instead of
+    // on the calling thread, so getHistory can briefly trail getTask
+    private final EventBus events;
+
+    public InMemoryTaskManager() {
+        this(null);
+    }
+
+    public InMemoryTaskManager(EventBus events) {
+        this.events = events;
+        if (events != null) {
+            events.subscribe("history", HISTORY_EVENTS_CAPACITY, EventBus.Backpressure.COALESCE, batch -> {
+                for (TaskEvent event : batch) {
+                    recordHistory(event.getType(), event.getTaskId(), event.getTask());
+                }
+            });
+        }
+    }
 
-    public HashMap<Integer, Task> getAllTasks() {
-        return tasks;
+    public Map<Integer, Task> getAllTasks() {
+        return tasks.asMap();
     }
 
-    public HashMap<Integer, Task> getAllEpics() {
-        return tasks.entrySet().stream()
-                .filter(entry -> entry.getValue() instanceof Epic)
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        entry -> (Epic) entry.getValue(),
-                        (e1, e2) -> e1, // in case of duplicate keys
-                        HashMap::new
-                ));
+    public Map<Integer, Task> getAllEpics() {
+        return Collections.unmodifiableMap(epics.asMap());
     }
 
     public List<Task> getHistory() {
-        return historyManager.getHistory();
+        synchronized (historyManager) {
+            return historyManager.getHistory();
+        }
+    }
+
+    @Override
+    public List<Task> getHistory(int offset, int limit) {
+        synchronized (historyManager) {
+            return historyManager.getHistory(offset, limit);
+        }
     }
 
     @Override
     public TreeSet<Task> getPrioritizedTasks() {
-        return prioritizedTasks;
+        // a copy, since changes made to the timeline from outside would bypass its index of free time
+        return new TreeSet<>(prioritizedTasks.tasks());
+    }
+
+    // a live, read-only view of the part of the timeline that covers the window
+    @Override
+    public NavigableSet<Task> getTasksBetween(LocalDateTime from, LocalDateTime to) {
+        return Collections.unmodifiableNavigableSet(window(prioritizedTasks.tasks(), from, to));
+    }
+
+    // tasks never overlap, so of the tasks starting before the window only the last one can reach into it;
+    // everything else in the window is the range of tasks starting inside it. The bounds are fixed here,
+    // later changes inside them show through the returned view
+    static NavigableSet<Task> window(NavigableSet<Task> timeline, LocalDateTime from, LocalDateTime to) {
+        long fromMinute = Task.toMinute(Objects.requireNonNull(from));
+        long toMinute = Task.toMinute(Objects.requireNonNull(to));
+        if (fromMinute >= toMinute) {
+            return Collections.emptyNavigableSet();
+        }
+        Task low = timelineProbe(fromMinute);
+        Task earlier = timeline.lower(low);
+        if (earlier != null && earlier.getEndMinute() > fromMinute) {
+            low = earlier;
+        }
+        return timeline.subSet(low, true, timelineProbe(toMinute), false);
+    }
+
+    @Override
+    public LocalDateTime findFreeSlot(Duration duration, LocalDateTime earliest) {
+        return Task.toDateTime(prioritizedTasks.firstFreeMinute(slotStart(earliest), slotMinutes(duration)));
+    }
+
+    @Override
+    public void addTaskAutoScheduled(Task task, LocalDateTime earliest) {
+        task.setStartTime(findFreeSlot(autoScheduledDuration(task), earliest));
+        addTask(task);
+    }
+
+    // the first whole minute at or after earliest, now when it is null
+    static long slotStart(LocalDateTime earliest) {
+        LocalDateTime from = earliest == null ? LocalDateTime.now() : earliest;
+        long minute = Task.toMinute(from);
+        return Task.toDateTime(minute).isBefore(from) ? minute + 1 : minute;
+    }
+
+    static long slotMinutes(Duration duration) {
+        if (duration == null || duration.isNegative()) {
+            throw new IllegalArgumentException("Duration must not be negative");
+        }
+        return duration.toMinutes();
+    }
+
+    // only plain tasks and subtasks with a duration can be placed on the timeline
+    static Duration autoScheduledDuration(Task task) {
+        if (task instanceof Epic) {
+            throw new IllegalArgumentException("Epics are scheduled by their subtasks");
+        }
+        if (task.getDuration() == null) {
+            throw new IllegalArgumentException("Task has no duration");
+        }
+        return task.getDuration();
+    }
+
+    // this manager is single-threaded, so the tasks written since the last snapshot can be copied on
+    // demand; repeated calls between writes share one snapshot
+    @Override
+    public TaskSnapshot snapshot() {
+        if (snapshot == null || snapshot.getVersion() != version) {
+            for (int id : unfrozen) {
+                Task previous = frozenTasks.get(id);
+                if (previous != null) {
+                    frozenTasks = frozenTasks.minus(id);
+                    frozenTimeline = frozenTimeline.minus(previous);
+                }
+                Task task = tasks.get(id);
+                if (task != null) {
+                    Task frozen = TaskSnapshot.freeze(task);
+                    frozenTasks = frozenTasks.plus(id, frozen);
+                    if (!(frozen instanceof Epic) && isScheduled(frozen)) {
+                        frozenTimeline = frozenTimeline.plus(frozen, frozen);
+                    }
+                }
+            }
+            unfrozen.clear();
+            snapshot = new TaskSnapshot(version, frozenTasks, frozenTimeline.keySet());
+        }
+        return snapshot;
     }
 
     @Override
     public void deleteAllTasks() {
+        version++;
         tasks.clear();
+        epics.clear();
+        subTasks.clear();
+        epicSubtasks.clear();
+        epicTimeline.clear();
+        prioritizedTasks.clear();
+        publish(TaskEvent.Type.CLEARED, null);
     }
 
     @Override
     public Task getTask(int id) {
-        historyManager.add(tasks.get(id));
-        return tasks.get(id);
+        Task task = tasks.get(id);
+        publish(TaskEvent.Type.VIEWED, task);
+        return task;
     }
 
     @Override
     public void addTask(Task task) {
+        checkExplicitId(task);
 
         if (!(task instanceof Epic)) {
             checkIntersection(task);
         }
 
-        if (task.getId() == null || task.getId() == -1) {
-            task.setId(counter);
-        }
-
         if (task instanceof SubTask subtask) {
             int epicId = subtask.getEpicId();
             if (isValidEpicId(epicId)) {
+                assignId(task);
                 Epic epic = (Epic) tasks.get(epicId);
                 epic.addSubtask(subtask.getId(), subtask);
             } else {
-                System.out.println("Epic with this ID does not exist");
+                Diagnostics.warn("Epic with this ID does not exist");
                 return;
             }
+        } else {
+            assignId(task);
         }
-        counter++;
+        version++;
         tasks.put(task.getId(), task);
+        indexByType(task);
         if (task instanceof SubTask subtask) {
             updateEpicStatus(subtask.getEpicId());
         }
-        if (!(task instanceof Epic)) {
+        if (!(task instanceof Epic) && isScheduled(task)) {
             prioritizedTasks.add(task);
         }
+        publish(TaskEvent.Type.ADDED, task);
+    }
+
+    @Override
+    public Collection<SubTask> getSubTasks() {
+        return Collections.unmodifiableCollection(subTasks.asMap().values());
+    }
+
+    @Override
+    public Task peek(int id) {
+        return tasks.get(id);
     }
 
     @Override
-    public List<SubTask> getSubTasks() {
-        return tasks.values().stream()
-                .filter(task -> task instanceof SubTask)
-                .map(task -> (SubTask) task)
-                .toList();
+    public boolean exists(int id) {
+        return tasks.contains(id);
     }
 
     @Override
     public void updateTask(int id, Task task) {
-        if (tasks.get(id).getClass() != task.getClass()) {
-            System.out.println("Error: Can't update " + tasks.get(id).getClass().getSimpleName() +
+        OperationResult result = update(id, task);
+        if (result.isSuccess()) {
+            Diagnostics.debug("Successfully updated!");
+        } else {
+            result.reportFailure();
+        }
+    }
+
+    @Override
+    public OperationResult update(int id, Task task) {
+        Task oldTask = tasks.get(id);
+        if (oldTask == null) {
+            return OperationResult.notFound(id, "Update failed!");
+        }
+        if (oldTask.getClass() != task.getClass()) {
+            return OperationResult.typeMismatch(id, "Error: Can't update " + oldTask.getClass().getSimpleName() +
                     " to " + task.getClass().getSimpleName());
-            return;
-        }
-        for (int element : tasks.keySet()) {
-            if (element == id) {
-                Task oldTask = tasks.get(element);
-                task.setId(id);
-                tasks.replace(element, oldTask, task);
-                System.out.println("Successfully updated!");
-                // add to history
-                if (historyManager.getHistory().contains(task)) {
-                    historyManager.add(task);
-                }
-                // update in prioritizedTasks
-                if (!(task instanceof Epic)) {
-                    prioritizedTasks.remove(oldTask);
-                    prioritizedTasks.add(task);
+        }
+        if (task instanceof SubTask subtask && !isValidEpicId(subtask.getEpicId())) {
+            return OperationResult.rejected(id, "Epic with this ID does not exist");
+        }
+        // the task must not collide with itself, so it leaves the timeline before the check
+        if (!(task instanceof Epic)) {
+            removeFromTimeline(oldTask);
+            try {
+                checkIntersection(task);
+            } catch (IllegalArgumentException e) {
+                if (isScheduled(oldTask)) {
+                    prioritizedTasks.add(oldTask);
                 }
-                return;
+                return OperationResult.conflict(id, e.getMessage());
+            }
+        }
+        task.setId(id);
+        version++;
+        tasks.put(id, task);
+        indexByType(task);
+        if (task instanceof SubTask subtask) {
+            // the subtask may also have been moved to another epic
+            int oldEpicId = ((SubTask) oldTask).getEpicId();
+            epics.get(oldEpicId).removeSubTask(id);
+            epics.get(subtask.getEpicId()).addSubtask(id, subtask);
+            if (oldEpicId != subtask.getEpicId()) {
+                updateEpicStatus(oldEpicId);
             }
+            updateEpicStatus(subtask.getEpicId());
+        } else if (task instanceof Epic epic) {
+            // subtasks stay with the epic when its own fields are replaced
+            epic.inheritSubtasks((Epic) oldTask);
+            updateEpicStatus(id);
+        }
+        // update in prioritizedTasks
+        if (!(task instanceof Epic) && isScheduled(task)) {
+            prioritizedTasks.add(task);
         }
-        System.out.println("Update failed!");
+        publish(TaskEvent.Type.UPDATED, task);
+        return OperationResult.updated(id);
     }
 
     @Override
     public void deleteByID(int id) {
+        boolean epic = epics.contains(id);
+        OperationResult result = delete(id);
+        if (!result.isSuccess()) {
+            result.reportFailure();
+        } else if (epic) {
+            Diagnostics.debug("Epic removed along with its ", result.getCascaded(), " subtask(s).");
+        } else {
+            Diagnostics.debug("Successfully deleted!");
+        }
+    }
+
+    @Override
+    public OperationResult delete(int id) {
         Task task = tasks.get(id);
 
         if (task == null) {
-            System.out.println("Delete failed! No task with this ID");
-            return;
+            return OperationResult.notFound(id, "Delete failed! No task with this ID");
         }
+        version++;
 
         if (task instanceof Epic epic) {
-            ArrayList<Integer> toRemove = new ArrayList<>();
-            for (Task t : tasks.values()) {
-                if (t instanceof SubTask subtask && subtask.getEpicId() == epic.getId()) {
-                    toRemove.add(subtask.getId());
-                }
-            }
-            for (int subId : toRemove) {
-                historyManager.remove(subId);
-                tasks.remove(subId);
+            // the epic indexes its own subtasks, so the rest of the tasks are never visited
+            for (Task subtask : epic.subtasks.values()) {
+                removeFromTimeline(subtask);
+                tasks.remove(subtask.getId());
+                unindexSubtask(subTasks.remove(subtask.getId()));
+                publish(TaskEvent.Type.DELETED, subtask);
             }
-            historyManager.remove(id);
             tasks.remove(id);
-            System.out.println("Epic removed along with its " + toRemove.size() + " subtask(s).");
-            return;
+            epics.remove(id);
+            publish(TaskEvent.Type.DELETED, epic);
+            return OperationResult.deleted(id, epic.subtasks.size());
         }
 
         if (task instanceof SubTask subtask) {
             Epic epic = (Epic) tasks.get(subtask.getEpicId());
             epic.removeSubTask(subtask.getId());
-            historyManager.remove(subtask.getId());
+            removeFromTimeline(subtask);
             tasks.remove(subtask.getId());
-            System.out.println("Successfully deleted!");
-            return;
+            unindexSubtask(subTasks.remove(subtask.getId()));
+            publish(TaskEvent.Type.DELETED, subtask);
+            updateEpicStatus(epic.getId());
+            return OperationResult.deleted(id, 0);
         }
-        prioritizedTasks.remove(task);
-        historyManager.remove(id);
+        removeFromTimeline(task);
         tasks.remove(id);
-        System.out.println("Successfully deleted!");
+        publish(TaskEvent.Type.DELETED, task);
+        return OperationResult.deleted(id, 0);
+    }
+
+    private void indexByType(Task task) {
+        if (task instanceof Epic epic) {
+            epics.put(epic.getId(), epic);
+        } else if (task instanceof SubTask subtask) {
+            unindexSubtask(subTasks.put(subtask.getId(), subtask));
+            epicSubtasks.add(subtask);
+            if (isScheduled(subtask)) {
+                epicTimeline.add(subtask);
+            }
+        }
+    }
+
+    private void unindexSubtask(SubTask subtask) {
+        if (subtask != null) {
+            epicSubtasks.remove(subtask);
+            epicTimeline.remove(subtask);
+        }
     }
 
     private boolean isValidEpicId(int id) {
@@ -176,83 +390,400 @@ public class InMemoryTaskManager implements TaskManager {
 
     @Override
     public void updateStatus(int id, Status status) {
+        OperationResult result = changeStatus(id, status);
+        if (result.isSuccess()) {
+            Diagnostics.debug("Task ID ", id, " status successfully updated.");
+        } else {
+            result.reportFailure();
+        }
+    }
+
+    @Override
+    public OperationResult changeStatus(int id, Status status) {
         Task task = tasks.get(id);
 
         if (task == null) {
-            System.out.println("Task with ID " + id + " not found.");
-            return;
+            return OperationResult.notFound(id, "Task with ID " + id + " not found.");
         }
 
         if (task instanceof Epic) {
-            System.out.println("Epic status cannot be changed manually — it is calculated automatically.");
-            return;
+            return OperationResult.rejected(id, "Epic status cannot be changed manually — it is calculated automatically.");
         }
 
-        task.setStatus(status);
-
-        System.out.println("Task ID " + id + " status successfully updated.");
+        Status oldStatus = task.getStatus();
+        version++;
+        setStatus(task, status);
+        publish(TaskEvent.Type.STATUS_CHANGED, task);
 
         if (task instanceof SubTask subtask) {
             int epicId = subtask.getEpicId();
+            epics.get(epicId).subtaskStatusChanged(oldStatus, status);
             updateEpicStatus(epicId);
         }
+        return OperationResult.updated(id);
     }
 
-    private void updateEpicStatus(int epicId) {
-        Epic epic = (Epic) tasks.get(epicId);
-        int newCount = 0;
-        int doneCount = 0;
-        if (epic.subtasks == null) {
-            epic.setStatus(Status.NEW);
-        }
-
-        for (Task element : epic.subtasks.values()) {
-            if (element.getStatus() == Status.NEW) {
-                newCount++;
-            } else if (element.getStatus() == Status.DONE) {
-                doneCount++;
+    @Override
+    public List<BatchResult> addAll(Collection<? extends Task> batch) {
+        List<Task> items = new ArrayList<>(batch);
+        String[] errors = new String[items.size()];
+        // an explicit id must be free, both in the manager and among the items before it
+        Set<Integer> batchIds = new HashSet<>();
+        for (int i = 0; i < items.size(); i++) {
+            Task task = items.get(i);
+            if (task == null) {
+                errors[i] = "Task is missing";
+            } else if (task.getId() != -1 && !TaskStore.isValidId(task.getId())) {
+                errors[i] = "Task id must not be negative";
+            } else if (task.getId() != -1 && (tasks.contains(task.getId()) || !batchIds.add(task.getId()))) {
+                errors[i] = "Task with this ID already exists";
+            }
+        }
+        // subtasks may belong to an epic of the same batch, as long as that epic comes with its id and is
+        // accepted itself
+        Set<Integer> batchEpics = new HashSet<>();
+        for (int i = 0; i < items.size(); i++) {
+            if (errors[i] == null && items.get(i) instanceof Epic && items.get(i).getId() != -1) {
+                batchEpics.add(items.get(i).getId());
             }
         }
+        List<Task> slots = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            Task task = items.get(i);
+            if (errors[i] == null && task instanceof SubTask subtask && !isValidEpicId(subtask.getEpicId())
+                    && !batchEpics.contains(subtask.getEpicId())) {
+                errors[i] = "Epic with this ID does not exist";
+            }
+            slots.add(errors[i] == null && !(task instanceof Epic) ? task : null);
+        }
+        rejectOverlapping(TimelineSweep.sweep(slots, null, prioritizedTasks.tasks(), prioritizedTasks::add), errors);
+
+        version++;
+        // ids generated for the batch must not collide with explicit ids further down the batch
+        for (int i = 0; i < items.size(); i++) {
+            if (errors[i] == null && items.get(i).getId() != -1) {
+                assignId(items.get(i));
+            }
+        }
+        List<BatchResult> results = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            Task task = items.get(i);
+            if (errors[i] != null) {
+                results.add(BatchResult.failed(task == null ? -1 : task.getId(), errors[i]));
+                continue;
+            }
+            assignId(task);
+            tasks.put(task.getId(), task);
+            indexByType(task);
+            if (slots.get(i) != null && isScheduled(task)) {
+                prioritizedTasks.add(task);
+            }
+            publish(TaskEvent.Type.ADDED, task);
+            results.add(BatchResult.ok(task.getId()));
+        }
+        // subtasks are attached once every epic of the batch is in place
+        Set<Integer> touchedEpics = new HashSet<>();
+        for (int i = 0; i < items.size(); i++) {
+            if (errors[i] == null && items.get(i) instanceof SubTask subtask) {
+                epics.get(subtask.getEpicId()).addSubtask(subtask.getId(), subtask);
+                touchedEpics.add(subtask.getEpicId());
+            }
+        }
+        touchedEpics.forEach(this::updateEpicStatus);
+        printBatchSummary("added", results);
+        return results;
+    }
+
+    @Override
+    public List<BatchResult> updateAll(Map<Integer, ? extends Task> batch) {
+        List<Integer> ids = new ArrayList<>(batch.keySet());
+        String[] errors = new String[ids.size()];
+        List<Task> slots = new ArrayList<>(ids.size());
+        List<Task> previous = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            Task task = batch.get(ids.get(i));
+            Task oldTask = tasks.get(ids.get(i));
+            if (task == null) {
+                errors[i] = "Task is missing";
+            } else if (oldTask == null) {
+                errors[i] = "No task with this ID";
+            } else if (oldTask.getClass() != task.getClass()) {
+                errors[i] = "Can't update " + oldTask.getClass().getSimpleName() +
+                        " to " + task.getClass().getSimpleName();
+            } else if (task instanceof SubTask subtask && !isValidEpicId(subtask.getEpicId())) {
+                errors[i] = "Epic with this ID does not exist";
+            }
+            boolean onTimeline = errors[i] == null && !(task instanceof Epic);
+            slots.add(onTimeline ? task : null);
+            previous.add(onTimeline ? oldTask : null);
+            // the tasks must not collide with their own old slots
+            if (onTimeline) {
+                removeFromTimeline(oldTask);
+            }
+        }
+        rejectOverlapping(TimelineSweep.sweep(slots, previous, prioritizedTasks.tasks(), prioritizedTasks::add), errors);
+
+        version++;
+        List<BatchResult> results = new ArrayList<>(ids.size());
+        Set<Integer> touchedEpics = new HashSet<>();
+        for (int i = 0; i < ids.size(); i++) {
+            int id = ids.get(i);
+            if (errors[i] != null) {
+                results.add(BatchResult.failed(id, errors[i]));
+                continue;
+            }
+            Task task = batch.get(id);
+            Task oldTask = tasks.get(id);
+            task.setId(id);
+            tasks.put(id, task);
+            indexByType(task);
+            if (task instanceof SubTask subtask) {
+                int oldEpicId = ((SubTask) oldTask).getEpicId();
+                epics.get(oldEpicId).removeSubTask(id);
+                epics.get(subtask.getEpicId()).addSubtask(id, subtask);
+                touchedEpics.add(oldEpicId);
+                touchedEpics.add(subtask.getEpicId());
+            } else if (task instanceof Epic epic) {
+                epic.inheritSubtasks((Epic) oldTask);
+                touchedEpics.add(id);
+            }
+            if (slots.get(i) != null && isScheduled(task)) {
+                prioritizedTasks.add(task);
+            }
+            publish(TaskEvent.Type.UPDATED, task);
+            results.add(BatchResult.ok(id));
+        }
+        touchedEpics.forEach(this::updateEpicStatus);
+        printBatchSummary("updated", results);
+        return results;
+    }
+
+    @Override
+    public List<BatchResult> updateStatuses(Map<Integer, Status> statuses) {
+        version++;
+        List<BatchResult> results = new ArrayList<>(statuses.size());
+        Set<Integer> touchedEpics = new HashSet<>();
+        for (Map.Entry<Integer, Status> entry : statuses.entrySet()) {
+            int id = entry.getKey();
+            Task task = tasks.get(id);
+            if (task == null) {
+                results.add(BatchResult.failed(id, "Task with ID " + id + " not found."));
+                continue;
+            }
+            if (task instanceof Epic) {
+                results.add(BatchResult.failed(id, "Epic status cannot be changed manually"));
+                continue;
+            }
+            Status oldStatus = task.getStatus();
+            setStatus(task, entry.getValue());
+            if (task instanceof SubTask subtask) {
+                epics.get(subtask.getEpicId()).subtaskStatusChanged(oldStatus, entry.getValue());
+                touchedEpics.add(subtask.getEpicId());
+            }
+            publish(TaskEvent.Type.STATUS_CHANGED, task);
+            results.add(BatchResult.ok(id));
+        }
+        touchedEpics.forEach(this::updateEpicStatus);
+        printBatchSummary("updated", results);
+        return results;
+    }
+
+    private static void rejectOverlapping(BitSet overlapping, String[] errors) {
+        for (int i = overlapping.nextSetBit(0); i >= 0; i = overlapping.nextSetBit(i + 1)) {
+            errors[i] = TimelineSweep.OVERLAP;
+        }
+    }
+
+    private static void printBatchSummary(String action, List<BatchResult> results) {
+        if (Diagnostics.isEnabled(Diagnostics.Level.DEBUG)) {
+            long succeeded = results.stream().filter(BatchResult::isSuccess).count();
+            Diagnostics.debug(succeeded + " of " + results.size() + " task(s) " + action);
+        }
+    }
+
+    private static void checkExplicitId(Task task) {
+        if (task.getId() != -1 && !TaskStore.isValidId(task.getId())) {
+            throw new IllegalArgumentException("Task id must not be negative: " + task.getId());
+        }
+    }
+
+    // explicit ids are kept, and the counter moves past them so that generated ids never collide
+    private void assignId(Task task) {
+        if (task.getId() == -1) {
+            task.setId(counter++);
+        } else {
+            counter = Math.max(counter, task.getId() + 1);
+        }
+    }
+
+    // in-place status changes have to reach the status indexes of the stores
+    private void setStatus(Task task, Status status) {
+        task.setStatus(status);
+        tasks.statusChanged(task.getId(), status);
+        if (task instanceof Epic) {
+            epics.statusChanged(task.getId(), status);
+        } else if (task instanceof SubTask) {
+            subTasks.statusChanged(task.getId(), status);
+        }
+    }
+
+    // a query walks one index in the requested order and stops right after the page, so its cost follows
+    // the page size rather than the number of tasks: ids come from the store bitmaps, which already
+    // narrow them down by type and status, start order from the timeline, and an epic's subtasks from
+    // the per-epic indexes; the remaining filters are checked on the way
+    @Override
+    public TaskPage query(TaskQuery query) {
+        Task after = query.cursorKey();
+        Iterator<Task> candidates;
+        if (query.getEpicId() != null) {
+            candidates = epicCandidates(query, after);
+        } else if (query.getOrder() == TaskQuery.Order.START_TIME) {
+            candidates = timelineCandidates(query, after);
+        } else {
+            candidates = idCandidates(query, after);
+        }
+        return TaskPage.collect(query, candidates);
+    }
+
+    private Iterator<Task> idCandidates(TaskQuery query, Task after) {
+        boolean descending = query.isDescending();
+        int step = descending ? -1 : 1;
+        int from = after == null ? (descending ? Integer.MAX_VALUE : 0) : after.getId() + step;
+        return new Iterator<>() {
+            private int next = from < 0 ? -1 : tasks.nextMatching(from, descending, query.getType(), query.getStatus());
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
 
-        if (newCount == epic.subtasks.size()) {
-            epic.setStatus(Status.NEW);
-            System.out.println("Epic " + epicId + " status was updated to NEW");
-        } else if (doneCount == epic.subtasks.size()) {
-            epic.setStatus(Status.DONE);
-            System.out.println("Epic " + epicId + " status was updated to DONE");
+            @Override
+            public Task next() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                int id = next;
+                next = id + step < 0 ? -1 : tasks.nextMatching(id + step, descending, query.getType(), query.getStatus());
+                return tasks.get(id);
+            }
+        };
+    }
+
+    private Iterator<Task> timelineCandidates(TaskQuery query, Task after) {
+        if (query.getType() == TaskType.EPIC) {
+            return Collections.emptyIterator();
+        }
+        // the page lies between the bounds of the time range, narrowed further by the cursor
+        Task low = query.getFromMinute() == Task.NO_TIME ? null : timelineProbe(query.getFromMinute());
+        boolean lowInclusive = true;
+        Task high = query.getToMinute() == Task.NO_TIME ? null : timelineProbe(query.getToMinute());
+        boolean highInclusive = false;
+        if (after != null && !query.isDescending() && (low == null || TIMELINE_ORDER.compare(after, low) >= 0)) {
+            low = after;
+            lowInclusive = false;
+        }
+        if (after != null && query.isDescending() && (high == null || TIMELINE_ORDER.compare(after, high) <= 0)) {
+            high = after;
+        }
+        if (low != null && high != null && TIMELINE_ORDER.compare(low, high) > 0) {
+            return Collections.emptyIterator();
+        }
+        NavigableSet<Task> timeline = prioritizedTasks.tasks();
+        NavigableSet<Task> range;
+        if (low == null) {
+            range = high == null ? timeline : timeline.headSet(high, highInclusive);
         } else {
-            epic.setStatus(Status.IN_PROGRESS);
-            System.out.println("Epic " + epicId + " status was updated to IN_PROGRESS");
+            range = high == null ? timeline.tailSet(low, lowInclusive) : timeline.subSet(low, lowInclusive, high, highInclusive);
+        }
+        return query.isDescending() ? range.descendingIterator() : range.iterator();
+    }
+
+    private Iterator<Task> epicCandidates(TaskQuery query, Task after) {
+        int epicId = query.getEpicId();
+        if (!epics.contains(epicId)) {
+            return Collections.emptyIterator();
+        }
+        TreeSet<Task> index = query.getOrder() == TaskQuery.Order.START_TIME ? epicTimeline : epicSubtasks;
+        NavigableSet<Task> members = index.subSet(epicFirst(epicId), true, epicLast(epicId), true);
+        NavigableSet<Task> ordered = query.isDescending() ? members.descendingSet() : members;
+        return (after == null ? ordered : ordered.tailSet(epicKey(epicId, after), false)).iterator();
+    }
+
+    // called after every change to an epic's subtasks, so the epic's copy is renewed along with theirs
+    private void updateEpicStatus(int epicId) {
+        unfrozen.add(epicId);
+        Epic epic = epics.get(epicId);
+        Status oldStatus = epic.getStatus();
+        setStatus(epic, epic.calculateStatus());
+        Diagnostics.debug("Epic ", epicId, " status was updated to ", epic.getStatus());
+        if (epic.getStatus() != oldStatus) {
+            publish(TaskEvent.Type.STATUS_CHANGED, epic);
+        }
+    }
+
+    // without a bus only the history has to hear about a change, and it is told right away
+    private void publish(TaskEvent.Type type, Task task) {
+        if (events != null) {
+            events.publish(new TaskEvent(type, task));
+        } else if (type == TaskEvent.Type.VIEWED || type == TaskEvent.Type.UPDATED || type == TaskEvent.Type.DELETED) {
+            recordHistory(type, task == null ? -1 : task.getId(), task);
+        }
+        if (type == TaskEvent.Type.CLEARED) {
+            frozenTasks = PersistentTreeMap.empty(Comparator.naturalOrder());
+            frozenTimeline = PersistentTreeMap.empty(TIMELINE_ORDER);
+            unfrozen.clear();
+        } else if (type != TaskEvent.Type.VIEWED) {
+            unfrozen.add(task.getId());
+        }
+        if (type != TaskEvent.Type.VIEWED) {
+            changed(type, task);
+        }
+    }
+
+    // called on the writing thread for every change but a view, once it has been applied; the task is
+    // null when everything was cleared
+    protected void changed(TaskEvent.Type type, Task task) {
+    }
+
+    private void recordHistory(TaskEvent.Type type, int id, Task task) {
+        synchronized (historyManager) {
+            switch (type) {
+                case VIEWED -> historyManager.add(task);
+                // a replaced task stays in the history only if it was viewed before
+                case UPDATED -> {
+                    if (historyManager.contains(id)) {
+                        historyManager.add(task);
+                    }
+                }
+                case DELETED -> historyManager.remove(id);
+                default -> {
+                }
+            }
         }
     }
 
     public void printAllTasks() {
-        for (int name : tasks.keySet()) {
-            String value = tasks.get(name).toString();
-            System.out.println(name + " " + value);
+        for (Map.Entry<Integer, Task> entry : tasks.asMap().entrySet()) {
+            System.out.println(entry.getKey() + " " + entry.getValue());
         }
     }
 
     @Override
     public void printHistory() {
         // currently, history is updated only if the user explicitly viewed a task (e.g., through case 7)
-        List<Task> history = historyManager.getHistory();
-        for (Task name : history) {
+        for (Task name : getHistory()) {
             System.out.println(name);
         }
     }
 
     public boolean checkIntersection(Task task) {
-        boolean hasIntersection = prioritizedTasks.stream()
-                .anyMatch(oldTask ->
-                        task.getStartTime() != null &&
-                                task.getEndTime() != null &&
-                                oldTask.getStartTime() != null &&
-                                oldTask.getEndTime() != null &&
-                                // intersection condition
-                                task.getStartTime().isBefore(oldTask.getEndTime()) &&
-                                task.getEndTime().isAfter(oldTask.getStartTime())
-                );
+        if (!isScheduled(task)) {
+            return false;
+        }
+        // end times grow with start times, so the last task starting before this one ends
+        // is the only one that can reach into it
+        Task candidate = prioritizedTasks.lower(timelineProbe(task.getEndMinute()));
+        boolean hasIntersection = candidate != null && candidate.getEndMinute() > task.getStartMinute();
 
         if (hasIntersection) {
             throw new IllegalArgumentException("Task overlaps in time with another task");
@@ -260,4 +791,37 @@ public class InMemoryTaskManager implements TaskManager {
 
         return hasIntersection;
     }
+
+    private void removeFromTimeline(Task task) {
+        if (isScheduled(task)) {
+            prioritizedTasks.remove(task);
+        }
+    }
+
+    static boolean isScheduled(Task task) {
+        return task.isScheduled();
+    }
+
+    // sorts before every timeline entry starting at the given moment
+    static Task timelineProbe(long startMinute) {
+        return Task.timeKey(startMinute, 0, Integer.MIN_VALUE);
+    }
+
+    // sorts among the subtasks of the epic where the given key sorts among tasks
+    static Task epicKey(int epicId, Task key) {
+        SubTask probe = new SubTask(null, null, null, epicId);
+        probe.setStartMinute(key.getStartMinute());
+        probe.setDuration(Math.max(0, key.getDurationMinutes()));
+        probe.setId(key.getId());
+        return probe;
+    }
+
+    // sort before and after every subtask of the epic, in both epic orders
+    static Task epicFirst(int epicId) {
+        return epicKey(epicId, Task.timeKey(Long.MIN_VALUE, 0, Integer.MIN_VALUE));
+    }
+
+    static Task epicLast(int epicId) {
+        return epicKey(epicId, Task.timeKey(Long.MAX_VALUE, 0, Integer.MAX_VALUE));
+    }
 }
\ No newline at end of file
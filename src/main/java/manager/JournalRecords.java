@@ -0,0 +1,184 @@
+package manager;
+
+import model.Epic;
+import model.Status;
+import model.SubTask;
+import model.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Binary form of the FileBackedTaskManager journal. Every record carries its length and a checksum, so
+// nothing a user types into a name or description can end a record early, and a record that a crash
+// cut short is told apart from one that was damaged on disk.
+//
+//   frame    payload length, CRC32 of the payload, payload
+//   payload  kind; for PUT the task: id, type, status, epic id, start minute (8 bytes), duration minutes,
+//            name, description; for DELETE the id; nothing more for CLEAR
+//   string   byte length, UTF-8 bytes; a length of -1 stands for null
+final class JournalRecords {
+
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+    static final byte CLEAR = 3;
+    private static final int FRAME_HEADER = 8;
+    private static final int NO_EPIC = -1;
+    private static final TaskType[] TYPES = TaskType.values();
+    private static final Status[] STATUSES = Status.values();
+
+    // a replayed record: the task of a PUT, or the id of a DELETE
+    record Entry(byte kind, int id, Task task) {
+    }
+
+    // the records of one file, oldest first, and whether its last record was cut short
+    record Contents(List<Entry> entries, boolean torn) {
+    }
+
+    private JournalRecords() {
+    }
+
+    static byte[] put(Task task) {
+        byte[] name = bytes(task.getName());
+        byte[] description = bytes(task.getDescription());
+        // an epic's time window follows from its subtasks, so it is not stored
+        boolean epic = task instanceof Epic;
+        ByteBuffer payload = ByteBuffer.allocate(1 + 4 + 1 + 1 + 4 + 8 + 4 + stringSize(name) + stringSize(description));
+        payload.put(PUT)
+                .putInt(task.getId())
+                .put((byte) TaskStore.typeOf(task).ordinal())
+                .put((byte) task.getStatus().ordinal())
+                .putInt(task instanceof SubTask subtask ? subtask.getEpicId() : NO_EPIC)
+                .putLong(epic ? Task.NO_TIME : task.getStartMinute())
+                .putInt(epic ? -1 : task.getDurationMinutes());
+        putString(payload, name);
+        putString(payload, description);
+        return frame(payload);
+    }
+
+    static byte[] delete(int id) {
+        return frame(ByteBuffer.allocate(5).put(DELETE).putInt(id));
+    }
+
+    static byte[] clear() {
+        return frame(ByteBuffer.allocate(1).put(CLEAR));
+    }
+
+    // a record that runs past the end of the file, or is the last one and fails its checksum, was being
+    // written when the process died and is left out; a damaged record with others after it cannot be
+    // explained by a crash, so the file is rejected instead of being replayed around the gap
+    static Contents read(File file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        List<Entry> entries = new ArrayList<>();
+        while (buffer.hasRemaining()) {
+            int start = buffer.position();
+            if (buffer.remaining() < FRAME_HEADER) {
+                return new Contents(entries, true);
+            }
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length < 1) {
+                throw new IOException("Journal record at byte " + start + " is damaged: " + file);
+            }
+            if (length > buffer.remaining()) {
+                return new Contents(entries, true);
+            }
+            ByteBuffer payload = buffer.slice(buffer.position(), length);
+            buffer.position(buffer.position() + length);
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                if (!buffer.hasRemaining()) {
+                    return new Contents(entries, true);
+                }
+                throw new IOException("Journal record at byte " + start + " is damaged: " + file);
+            }
+            try {
+                entries.add(decode(payload));
+            } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException
+                     | IllegalArgumentException e) {
+                throw new IOException("Journal record at byte " + start + " cannot be read: " + file, e);
+            }
+        }
+        return new Contents(entries, false);
+    }
+
+    private static Entry decode(ByteBuffer payload) {
+        byte kind = payload.get();
+        switch (kind) {
+            case PUT -> {
+                int id = payload.getInt();
+                TaskType type = TYPES[payload.get()];
+                Status status = STATUSES[payload.get()];
+                int epicId = payload.getInt();
+                long startMinute = payload.getLong();
+                int duration = payload.getInt();
+                String name = getString(payload);
+                String description = getString(payload);
+                Task task = switch (type) {
+                    case EPIC -> new Epic(name, description, status, new HashMap<>());
+                    case SUBTASK -> new SubTask(name, description, status, epicId);
+                    default -> new Task(name, description, status);
+                };
+                if (type != TaskType.EPIC) {
+                    task.setStartMinute(startMinute);
+                    if (duration >= 0) {
+                        task.setDuration(duration);
+                    }
+                }
+                task.setId(id);
+                return new Entry(kind, id, task);
+            }
+            case DELETE -> {
+                return new Entry(kind, payload.getInt(), null);
+            }
+            case CLEAR -> {
+                return new Entry(kind, 0, null);
+            }
+            default -> throw new IllegalArgumentException("Unknown journal record kind " + kind);
+        }
+    }
+
+    private static byte[] frame(ByteBuffer payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload.array(), 0, payload.position());
+        return ByteBuffer.allocate(FRAME_HEADER + payload.position())
+                .putInt(payload.position())
+                .putInt((int) crc.getValue())
+                .put(payload.array(), 0, payload.position())
+                .array();
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int stringSize(byte[] bytes) {
+        return 4 + (bytes == null ? 0 : bytes.length);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == -1) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
\ No newline at end of file
@@ -2,9 +2,14 @@ package manager;
 
 import java.io.File;
 import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
 
 public class Managers  {
 
+    private static final long DEFAULT_CHECKPOINT_BYTES = 4L << 20;
+    private static final String DEFAULT_CHECKPOINT_INTERVAL = "PT5M";
+
     public static TaskManager getDefault()  {
 
         // return new InMemoryTaskManager();
@@ -16,11 +21,25 @@ public class Managers  {
         return new InMemoryTaskManager();
     }
 
+    public static TaskManager getConcurrent()  {
+        return new ConcurrentTaskManager();
+    }
+
+    // the journal is folded into the snapshot in the background once it reaches
+    // -Dtaskmanager.checkpoint.bytes, and every -Dtaskmanager.checkpoint.interval (an ISO-8601 duration)
     public static TaskManager getFileBackedManager() throws IOException {
-        return FileBackedTaskManager.loadFromFile(new File("java_kanban.csv"));
+        FileBackedTaskManager manager = FileBackedTaskManager.loadFromFile(new File("java_kanban.csv"));
+        long bytes = Long.getLong("taskmanager.checkpoint.bytes", DEFAULT_CHECKPOINT_BYTES);
+        String interval = System.getProperty("taskmanager.checkpoint.interval", DEFAULT_CHECKPOINT_INTERVAL);
+        manager.startCheckpointing(bytes, Duration.parse(interval));
+        return manager;
     }
 
+    // -Dtaskmanager.history.capacity and -Dtaskmanager.history.maxAge (an ISO-8601 duration such as
+    // PT24H) bound the history; without them it keeps one entry per viewed task, for good
     public static HistoryManager getDefaultHistory() {
-        return new InMemoryHistoryManager();
+        int capacity = Integer.getInteger("taskmanager.history.capacity", InMemoryHistoryManager.UNBOUNDED);
+        String maxAge = System.getProperty("taskmanager.history.maxAge");
+        return new InMemoryHistoryManager(capacity, maxAge == null ? null : Duration.parse(maxAge), Clock.systemUTC());
     }
 }
\ No newline at end of file
@@ -0,0 +1,91 @@
+package manager;
+
+// outcome of a single update, delete or status change; failures carry the message the void variants print
+public final class OperationResult {
+
+    public enum Outcome {
+        UPDATED,
+        DELETED,
+        NOT_FOUND,
+        // the replacement is of another kind of task than the one stored under the id
+        TYPE_MISMATCH,
+        // the new time slot overlaps another task
+        CONFLICT,
+        // anything else the manager refuses, such as a missing epic or setting an epic's status
+        REJECTED
+    }
+
+    private final Outcome outcome;
+    private final int id;
+    private final int cascaded;
+    private final String message;
+
+    private OperationResult(Outcome outcome, int id, int cascaded, String message) {
+        this.outcome = outcome;
+        this.id = id;
+        this.cascaded = cascaded;
+        this.message = message;
+    }
+
+    static OperationResult updated(int id) {
+        return new OperationResult(Outcome.UPDATED, id, 0, null);
+    }
+
+    static OperationResult deleted(int id, int cascaded) {
+        return new OperationResult(Outcome.DELETED, id, cascaded, null);
+    }
+
+    static OperationResult notFound(int id, String message) {
+        return new OperationResult(Outcome.NOT_FOUND, id, 0, message);
+    }
+
+    static OperationResult typeMismatch(int id, String message) {
+        return new OperationResult(Outcome.TYPE_MISMATCH, id, 0, message);
+    }
+
+    static OperationResult conflict(int id, String message) {
+        return new OperationResult(Outcome.CONFLICT, id, 0, message);
+    }
+
+    static OperationResult rejected(int id, String message) {
+        return new OperationResult(Outcome.REJECTED, id, 0, message);
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public boolean isSuccess() {
+        return outcome == Outcome.UPDATED || outcome == Outcome.DELETED;
+    }
+
+    // subtasks deleted together with a deleted epic
+    public int getCascaded() {
+        return cascaded;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    BatchResult toBatchResult() {
+        return isSuccess() ? BatchResult.ok(id) : BatchResult.failed(id, message);
+    }
+
+    // what the void variants do with a failure: an overlap is thrown, as it always was, the rest is printed
+    void reportFailure() {
+        if (outcome == Outcome.CONFLICT) {
+            throw new IllegalArgumentException(message);
+        }
+        Diagnostics.warn(message);
+    }
+
+    @Override
+    public String toString() {
+        return id + ": " + outcome + (message == null ? "" : " (" + message + ")");
+    }
+}
\ No newline at end of file
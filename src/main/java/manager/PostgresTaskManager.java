@@ -5,9 +5,13 @@ import java.sql.*;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class PostgresTaskManager implements TaskManager {
     private final HistoryManager history = Managers.getDefaultHistory();
+    // the database has no counter that moves exactly when the tasks change, so every snapshot simply
+    // gets the next number: versions of this manager never repeat, but equal data may differ in version
+    private final AtomicLong snapshots = new AtomicLong();
 
     public PostgresTaskManager() {
         // can create tables here
@@ -69,32 +73,96 @@ public class PostgresTaskManager implements TaskManager {
         }
     }
 
-    private Status calcEpicStatus(int epicId, Connection c) throws SQLException {
-        int total = 0, newCnt = 0, doneCnt = 0;
-        try (PreparedStatement ps = c.prepareStatement(
-                "SELECT status FROM tasks WHERE type='SUBTASK' AND epic_id=?")) {
-            ps.setInt(1, epicId);
+    // binds name, description, status, start_time, duration_min and epic_id, starting at the given index
+    private void bindFields(PreparedStatement ps, int from, Task task) throws SQLException {
+        ps.setString(from, task.getName());
+        ps.setString(from + 1, task.getDescription());
+        ps.setString(from + 2, task.getStatus().name());
+        if (task.getStartTime() != null) ps.setTimestamp(from + 3, Timestamp.valueOf(task.getStartTime()));
+        else ps.setNull(from + 3, Types.TIMESTAMP);
+        Integer mins = minutesOrNull(task.getDuration());
+        if (mins != null) ps.setInt(from + 4, mins); else ps.setNull(from + 4, Types.INTEGER);
+        if (task instanceof SubTask s) ps.setInt(from + 5, s.getEpicId()); else ps.setNull(from + 5, Types.INTEGER);
+    }
+
+    private static String typeOf(Task task) {
+        return (task instanceof Epic) ? "EPIC" : (task instanceof SubTask ? "SUBTASK" : "TASK");
+    }
+
+    private Map<Integer, Task> loadByIds(Connection c, Collection<Integer> ids) throws SQLException {
+        Map<Integer, Task> found = new HashMap<>();
+        try (PreparedStatement ps = c.prepareStatement("SELECT * FROM tasks WHERE id = ANY (?)")) {
+            ps.setArray(1, c.createArrayOf("integer", ids.toArray()));
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    total++;
-                    Status s = Status.valueOf(rs.getString(1));
-                    if (s == Status.NEW) newCnt++;
-                    else if (s == Status.DONE) doneCnt++;
+                    Task t = mapRow(rs);
+                    found.put(t.getId(), t);
                 }
             }
         }
-        if (total == 0) return Status.NEW;
-        if (doneCnt == total) return Status.DONE;
-        if (newCnt == total)  return Status.NEW;
-        return Status.IN_PROGRESS;
+        return found;
+    }
+
+    private Set<Integer> existingEpics(Connection c, Collection<Integer> ids) throws SQLException {
+        Set<Integer> found = new HashSet<>();
+        try (PreparedStatement ps = c.prepareStatement("SELECT id FROM tasks WHERE type='EPIC' AND id = ANY (?)")) {
+            ps.setArray(1, c.createArrayOf("integer", ids.toArray()));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) found.add(rs.getInt(1));
+            }
+        }
+        return found;
+    }
+
+    // the part of the timeline a batch of slots can collide with, in one query: every scheduled row
+    // reaching into the span from the earliest start to the latest end, apart from the excluded ids
+    private TreeSet<Task> timelineAround(Connection c, List<? extends Task> slots, Collection<Integer> excluded)
+            throws SQLException {
+        TreeSet<Task> timeline = new TreeSet<>(InMemoryTaskManager.TIMELINE_ORDER);
+        Task first = null, last = null;
+        for (Task slot : slots) {
+            if (slot == null || !slot.isScheduled()) continue;
+            if (first == null || slot.getStartMinute() < first.getStartMinute()) first = slot;
+            if (last == null || slot.getEndMinute() > last.getEndMinute()) last = slot;
+        }
+        if (first == null) return timeline;
+        String sql = """
+            SELECT * FROM tasks
+             WHERE type <> 'EPIC'
+               AND start_time IS NOT NULL
+               AND duration_min IS NOT NULL
+               AND start_time < ?
+               AND (start_time + (duration_min || ' minutes')::interval) > ?
+               AND NOT (id = ANY (?))
+            """;
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setTimestamp(1, Timestamp.valueOf(last.getEndTime()));
+            ps.setTimestamp(2, Timestamp.valueOf(first.getStartTime()));
+            ps.setArray(3, c.createArrayOf("integer", excluded.toArray()));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) timeline.add(mapRow(rs));
+            }
+        }
+        return timeline;
     }
 
+    private static void rejectOverlapping(BitSet overlapping, String[] errors) {
+        for (int i = overlapping.nextSetBit(0); i >= 0; i = overlapping.nextSetBit(i + 1)) {
+            errors[i] = TimelineSweep.OVERLAP;
+        }
+    }
+
+    // the status is derived from the subtasks in the same statement that stores it, so it always matches
+    // the table, whoever else writes to it
     private void updateEpicStatus(int epicId, Connection c) throws SQLException {
-        Status st = calcEpicStatus(epicId, c);
-        try (PreparedStatement ps = c.prepareStatement(
-                "UPDATE tasks SET status=? WHERE id=? AND type='EPIC'")) {
-            ps.setString(1, st.name());
-            ps.setInt(2, epicId);
+        String sql = "UPDATE tasks e SET status = ("
+                + " SELECT CASE WHEN COUNT(*) = COUNT(*) FILTER (WHERE s.status = 'NEW') THEN 'NEW'"
+                + " WHEN COUNT(*) = COUNT(*) FILTER (WHERE s.status = 'DONE') THEN 'DONE'"
+                + " ELSE 'IN_PROGRESS' END"
+                + " FROM tasks s WHERE s.type = 'SUBTASK' AND s.epic_id = e.id)"
+                + " WHERE e.id = ? AND e.type = 'EPIC'";
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, epicId);
             ps.executeUpdate();
         }
     }
@@ -105,32 +173,27 @@ public class PostgresTaskManager implements TaskManager {
     public void addTask(Task task) {
         if (!(task instanceof Epic)) checkIntersection(task);
         try (Connection c = Db.getConnection()) {
-            int id = (task.getId() == null || task.getId() == -1) ? nextId(c) : task.getId();
+            int id = task.getId() == -1 ? nextId(c) : task.getId();
             task.setId(id);
 
-            String type = (task instanceof Epic) ? "EPIC" : (task instanceof SubTask ? "SUBTASK" : "TASK");
+            String type = typeOf(task);
             String sql = "INSERT INTO tasks (id,type,name,description,status,start_time,duration_min,epic_id) VALUES (?,?,?,?,?,?,?,?)";
             try (PreparedStatement ps = c.prepareStatement(sql)) {
                 ps.setInt(1, id);
                 ps.setString(2, type);
-                ps.setString(3, task.getName());
-                ps.setString(4, task.getDescription());
-                ps.setString(5, task.getStatus().name());
-                if (task.getStartTime() != null) ps.setTimestamp(6, Timestamp.valueOf(task.getStartTime()));
-                else ps.setNull(6, Types.TIMESTAMP);
-                Integer mins = minutesOrNull(task.getDuration());
-                if (mins != null) ps.setInt(7, mins); else ps.setNull(7, Types.INTEGER);
-                if (task instanceof SubTask s) ps.setInt(8, s.getEpicId()); else ps.setNull(8, Types.INTEGER);
+                bindFields(ps, 3, task);
                 ps.executeUpdate();
             }
-            if (task instanceof SubTask s) updateEpicStatus(s.getEpicId(), c);
+            if (task instanceof SubTask s) {
+                updateEpicStatus(s.getEpicId(), c);
+            }
         } catch (SQLException e) {
             throw new RuntimeException("DB addTask failed", e);
         }
     }
 
     @Override
-    public List<SubTask> getSubTasks() {
+    public Collection<SubTask> getSubTasks() {
         String sql = "SELECT * FROM tasks WHERE type='SUBTASK' ORDER BY id";
         try (Connection c = Db.getConnection(); Statement st = c.createStatement(); ResultSet rs = st.executeQuery(sql)) {
             List<SubTask> out = new ArrayList<>();
@@ -143,14 +206,18 @@ public class PostgresTaskManager implements TaskManager {
 
     @Override
     public Task getTask(int id) {
+        Task t = peek(id);
+        if (t != null) history.add(t);
+        return t;
+    }
+
+    @Override
+    public Task peek(int id) {
         String sql = "SELECT * FROM tasks WHERE id=?";
         try (Connection c = Db.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setInt(1, id);
             try (ResultSet rs = ps.executeQuery()) {
-                if (!rs.next()) return null;
-                Task t = mapRow(rs);
-                history.add(t);
-                return t;
+                return rs.next() ? mapRow(rs) : null;
             }
         } catch (SQLException e) {
             throw new RuntimeException(e);
@@ -158,55 +225,91 @@ public class PostgresTaskManager implements TaskManager {
     }
 
     @Override
-    public void updateTask(int id, Task task) {
-        try (Connection c = Db.getConnection()) {
-            String existingType;
-            try (PreparedStatement find = c.prepareStatement("SELECT type FROM tasks WHERE id=?")) {
-                find.setInt(1, id);
-                try (ResultSet rs = find.executeQuery()) {
-                    if (!rs.next()) {
-                        System.out.println("Update failed! Task with such ID not found."); return;
-                    }
-                    existingType = rs.getString(1);
-                }
-            }
-            String newType = (task instanceof Epic) ? "EPIC" : (task instanceof SubTask ? "SUBTASK" : "TASK");
-            if (!existingType.equals(newType)) {
-                System.out.println("Error: Cannot update " + existingType + " to " + newType);
-                return;
+    public boolean exists(int id) {
+        try (Connection c = Db.getConnection(); PreparedStatement ps = c.prepareStatement("SELECT EXISTS (SELECT 1 FROM tasks WHERE id=?)")) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getBoolean(1);
             }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-            String sql = "UPDATE tasks SET name=?, description=?, status=?, start_time=?, duration_min=?, epic_id=? WHERE id=?";
-            try (PreparedStatement ps = c.prepareStatement(sql)) {
-                ps.setString(1, task.getName());
-                ps.setString(2, task.getDescription());
-                ps.setString(3, task.getStatus().name());
-                if (task.getStartTime() != null) ps.setTimestamp(4, Timestamp.valueOf(task.getStartTime()));
-                else ps.setNull(4, Types.TIMESTAMP);
-                Integer mins = minutesOrNull(task.getDuration());
-                if (mins != null) ps.setInt(5, mins); else ps.setNull(5, Types.INTEGER);
-                if (task instanceof SubTask s) ps.setInt(6, s.getEpicId()); else ps.setNull(6, Types.INTEGER);
-                ps.setInt(7, id);
-                ps.executeUpdate();
-            }
+    @Override
+    public void updateTask(int id, Task task) {
+        OperationResult result = update(id, task);
+        if (result.isSuccess()) Diagnostics.debug("Updated successfully!");
+        else result.reportFailure();
+    }
 
-            if (history.getHistory().stream().anyMatch(t -> Objects.equals(t.getId(), id))) {
-                Task fresh = getTask(id);
-                if (fresh != null) history.add(fresh);
+    // one statement: the old row is read and locked, the overlap and the target epic are checked, and the
+    // row is only updated if all of that passes; the checks come back so the outcome can be told apart
+    @Override
+    public OperationResult update(int id, Task task) {
+        String sql = """
+            WITH old AS (
+                SELECT id, type, epic_id FROM tasks WHERE id = ? FOR UPDATE
+            ), clash AS (
+                SELECT 1 FROM tasks
+                 WHERE type <> 'EPIC'
+                   AND start_time IS NOT NULL
+                   AND duration_min IS NOT NULL
+                   AND id <> ?
+                   AND start_time < ?
+                   AND (start_time + (duration_min || ' minutes')::interval) > ?
+                 LIMIT 1
+            ), epic AS (
+                SELECT 1 FROM tasks WHERE id = ? AND type = 'EPIC'
+            ), upd AS (
+                UPDATE tasks t SET name=?, description=?, status=?, start_time=?, duration_min=?, epic_id=?
+                  FROM old
+                 WHERE t.id = old.id
+                   AND old.type = ?
+                   AND NOT EXISTS (SELECT 1 FROM clash)
+                   AND (old.type <> 'SUBTASK' OR EXISTS (SELECT 1 FROM epic))
+                RETURNING t.id
+            )
+            SELECT old.type, old.epic_id, EXISTS (SELECT 1 FROM clash), EXISTS (SELECT 1 FROM epic)
+              FROM old
+            """;
+        String newType = typeOf(task);
+        boolean onTimeline = !(task instanceof Epic) && task.isScheduled();
+        try (Connection c = Db.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, id);
+            ps.setInt(2, id);
+            if (onTimeline) {
+                ps.setTimestamp(3, Timestamp.valueOf(task.getEndTime()));
+                ps.setTimestamp(4, Timestamp.valueOf(task.getStartTime()));
+            } else {
+                ps.setNull(3, Types.TIMESTAMP);
+                ps.setNull(4, Types.TIMESTAMP);
             }
-
-            if ("SUBTASK".equals(existingType)) {
-                try (PreparedStatement ps = c.prepareStatement("SELECT epic_id FROM tasks WHERE id=?")) {
-                    ps.setInt(1, id);
-                    try (ResultSet rs = ps.executeQuery()) {
-                        if (rs.next()) {
-                            Integer epicId = (Integer) rs.getObject(1);
-                            if (epicId != null) updateEpicStatus(epicId, c);
-                        }
-                    }
+            if (task instanceof SubTask s) ps.setInt(5, s.getEpicId()); else ps.setNull(5, Types.INTEGER);
+            bindFields(ps, 6, task);
+            ps.setString(12, newType);
+            String existingType; Integer oldEpicId;
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return OperationResult.notFound(id, "Update failed! Task with such ID not found.");
+                existingType = rs.getString(1);
+                oldEpicId = (Integer) rs.getObject(2);
+                if (!existingType.equals(newType)) {
+                    return OperationResult.typeMismatch(id, "Error: Cannot update " + existingType + " to " + newType);
+                }
+                if (rs.getBoolean(3)) return OperationResult.conflict(id, "Task overlaps in time with another task");
+                if (task instanceof SubTask && !rs.getBoolean(4)) {
+                    return OperationResult.rejected(id, "Epic with this ID does not exist");
                 }
             }
-            System.out.println("Updated successfully!");
+            task.setId(id);
+            if (history.contains(id)) history.add(task);
+
+            if (task instanceof SubTask s) {
+                if (oldEpicId != null && oldEpicId != s.getEpicId()) updateEpicStatus(oldEpicId, c);
+                updateEpicStatus(s.getEpicId(), c);
+            }
+            return OperationResult.updated(id);
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -214,44 +317,43 @@ public class PostgresTaskManager implements TaskManager {
 
     @Override
     public void deleteByID(int id) {
-        try (Connection c = Db.getConnection()) {
-            String type = null; Integer epicId = null;
-            try (PreparedStatement f = c.prepareStatement("SELECT type, epic_id FROM tasks WHERE id=?")) {
-                f.setInt(1, id);
-                try (ResultSet rs = f.executeQuery()) {
-                    if (!rs.next()) {
-                        System.out.println("Delete failed! Task with such ID not found."); return;
-                    }
-                    type = rs.getString(1);
-                    epicId = (Integer) rs.getObject(2);
-                }
-            }
+        OperationResult result = delete(id);
+        if (!result.isSuccess()) result.reportFailure();
+        else if (result.getCascaded() > 0) Diagnostics.debug("Epic and its subtasks deleted.");
+        else Diagnostics.debug("Deleted successfully!");
+    }
 
+    // one statement: the row is deleted and its subtasks go with it through the foreign key; they are read
+    // from the snapshot the statement started with, so their ids can leave the history too
+    @Override
+    public OperationResult delete(int id) {
+        String sql = """
+            WITH gone AS (
+                DELETE FROM tasks WHERE id = ? RETURNING type, epic_id
+            )
+            SELECT gone.type, gone.epic_id,
+                   ARRAY(SELECT id FROM tasks WHERE type = 'SUBTASK' AND epic_id = ?)
+              FROM gone
+            """;
+        try (Connection c = Db.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, id);
+            ps.setInt(2, id);
+            String type; Integer epicId; Integer[] subtaskIds;
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return OperationResult.notFound(id, "Delete failed! Task with such ID not found.");
+                type = rs.getString(1);
+                epicId = (Integer) rs.getObject(2);
+                subtaskIds = (Integer[]) rs.getArray(3).getArray();
+            }
+            history.remove(id);
             if ("EPIC".equals(type)) {
-                try (PreparedStatement s = c.prepareStatement("SELECT id FROM tasks WHERE type='SUBTASK' AND epic_id=?")) {
-                    s.setInt(1, id);
-                    try (ResultSet rs = s.executeQuery()) {
-                        while (rs.next()) history.remove(rs.getInt(1));
-                    }
-                }
-                try (PreparedStatement d = c.prepareStatement("DELETE FROM tasks WHERE id=?")) {
-                    d.setInt(1, id);
-                    d.executeUpdate();
-                }
-                history.remove(id);
-                System.out.println("Epic and its subtasks deleted.");
-                return;
+                for (Integer subtaskId : subtaskIds) history.remove(subtaskId);
+                return OperationResult.deleted(id, subtaskIds.length);
             }
-
-            try (PreparedStatement d = c.prepareStatement("DELETE FROM tasks WHERE id=?")) {
-                d.setInt(1, id);
-                d.executeUpdate();
+            if ("SUBTASK".equals(type) && epicId != null) {
+                updateEpicStatus(epicId, c);
             }
-            history.remove(id);
-
-            if ("SUBTASK".equals(type) && epicId != null) updateEpicStatus(epicId, c);
-
-            System.out.println("Deleted successfully!");
+            return OperationResult.deleted(id, 0);
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -273,31 +375,213 @@ public class PostgresTaskManager implements TaskManager {
 
     @Override
     public void updateStatus(int id, Status status) {
+        OperationResult result = changeStatus(id, status);
+        if (result.isSuccess()) Diagnostics.debug("Task ID ", id, " status successfully updated.");
+        else result.reportFailure();
+    }
+
+    // one statement that reads the old row and updates it unless it is an epic
+    @Override
+    public OperationResult changeStatus(int id, Status status) {
+        String sql = """
+            WITH old AS (
+                SELECT type, epic_id FROM tasks WHERE id = ? FOR UPDATE
+            ), upd AS (
+                UPDATE tasks t SET status = ? FROM old WHERE t.id = ? AND old.type <> 'EPIC' RETURNING t.id
+            )
+            SELECT old.type, old.epic_id FROM old
+            """;
+        try (Connection c = Db.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, id);
+            ps.setString(2, status.name());
+            ps.setInt(3, id);
+            String type; Integer epicId;
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return OperationResult.notFound(id, "Task with ID " + id + " not found.");
+                type = rs.getString(1);
+                epicId = (Integer) rs.getObject(2);
+            }
+            if ("EPIC".equals(type)) {
+                return OperationResult.rejected(id, "Epic status cannot be changed manually — it is calculated automatically.");
+            }
+            if ("SUBTASK".equals(type) && epicId != null) {
+                updateEpicStatus(epicId, c);
+            }
+            return OperationResult.updated(id);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // each batch runs in one transaction: one query for the affected part of the timeline, JDBC batches
+    // for the writes and one status update per affected epic
+    @Override
+    public List<BatchResult> addAll(Collection<? extends Task> batch) {
+        List<Task> items = new ArrayList<>(batch);
+        String[] errors = new String[items.size()];
         try (Connection c = Db.getConnection()) {
-            String type = null; Integer epicId = null;
-            try (PreparedStatement f = c.prepareStatement("SELECT type, epic_id FROM tasks WHERE id=?")) {
-                f.setInt(1, id);
-                try (ResultSet rs = f.executeQuery()) {
-                    if (!rs.next()) {
-                        System.out.println("Task with ID " + id + " not found."); return;
+            c.setAutoCommit(false);
+            try {
+                Set<Integer> referenced = new HashSet<>();
+                Set<Integer> batchEpics = new HashSet<>();
+                for (Task task : items) {
+                    if (task instanceof SubTask s) referenced.add(s.getEpicId());
+                    if (task instanceof Epic && task.getId() != -1) batchEpics.add(task.getId());
+                }
+                Set<Integer> epics = existingEpics(c, referenced);
+                epics.addAll(batchEpics);
+
+                List<Task> slots = new ArrayList<>(items.size());
+                for (int i = 0; i < items.size(); i++) {
+                    Task task = items.get(i);
+                    if (task == null) errors[i] = "Task is missing";
+                    else if (task instanceof SubTask s && !epics.contains(s.getEpicId())) errors[i] = "Epic with this ID does not exist";
+                    slots.add(errors[i] == null && !(task instanceof Epic) ? task : null);
+                }
+                rejectOverlapping(TimelineSweep.sweep(slots, null, timelineAround(c, slots, List.of())), errors);
+
+                List<BatchResult> results = new ArrayList<>(items.size());
+                Set<Integer> touchedEpics = new HashSet<>();
+                String sql = "INSERT INTO tasks (id,type,name,description,status,start_time,duration_min,epic_id) VALUES (?,?,?,?,?,?,?,?)";
+                try (PreparedStatement ps = c.prepareStatement(sql)) {
+                    for (int i = 0; i < items.size(); i++) {
+                        Task task = items.get(i);
+                        if (errors[i] != null) {
+                            results.add(BatchResult.failed(task == null ? -1 : task.getId(), errors[i]));
+                            continue;
+                        }
+                        if (task.getId() == -1) task.setId(nextId(c));
+                        ps.setInt(1, task.getId());
+                        ps.setString(2, typeOf(task));
+                        bindFields(ps, 3, task);
+                        ps.addBatch();
+                        if (task instanceof SubTask s) {
+                            touchedEpics.add(s.getEpicId());
+                        }
+                        results.add(BatchResult.ok(task.getId()));
                     }
-                    type = rs.getString(1);
-                    epicId = (Integer) rs.getObject(2);
+                    ps.executeBatch();
                 }
+                for (int epicId : touchedEpics) updateEpicStatus(epicId, c);
+                c.commit();
+                return results;
+            } catch (SQLException | RuntimeException e) {
+                c.rollback();
+                throw e;
             }
-            if ("EPIC".equals(type)) {
-                System.out.println("Epic status cannot be changed manually — it is calculated automatically.");
-                return;
+        } catch (SQLException e) {
+            throw new RuntimeException("DB addAll failed", e);
+        }
+    }
+
+    @Override
+    public List<BatchResult> updateAll(Map<Integer, ? extends Task> batch) {
+        List<Integer> ids = new ArrayList<>(batch.keySet());
+        String[] errors = new String[ids.size()];
+        try (Connection c = Db.getConnection()) {
+            c.setAutoCommit(false);
+            try {
+                Map<Integer, Task> existing = loadByIds(c, ids);
+                Set<Integer> referenced = new HashSet<>();
+                for (Task task : batch.values()) {
+                    if (task instanceof SubTask s) referenced.add(s.getEpicId());
+                }
+                Set<Integer> epics = existingEpics(c, referenced);
+
+                List<Task> slots = new ArrayList<>(ids.size());
+                List<Task> previous = new ArrayList<>(ids.size());
+                List<Integer> moving = new ArrayList<>();
+                for (int i = 0; i < ids.size(); i++) {
+                    Task task = batch.get(ids.get(i));
+                    Task old = existing.get(ids.get(i));
+                    if (task == null) errors[i] = "Task is missing";
+                    else if (old == null) errors[i] = "No task with this ID";
+                    else if (old.getClass() != task.getClass()) errors[i] = "Cannot update " + typeOf(old) + " to " + typeOf(task);
+                    else if (task instanceof SubTask s && !epics.contains(s.getEpicId())) errors[i] = "Epic with this ID does not exist";
+                    boolean onTimeline = errors[i] == null && !(task instanceof Epic);
+                    slots.add(onTimeline ? task : null);
+                    previous.add(onTimeline ? old : null);
+                    // the tasks must not collide with their own old slots
+                    if (onTimeline) moving.add(ids.get(i));
+                }
+                rejectOverlapping(TimelineSweep.sweep(slots, previous, timelineAround(c, slots, moving)), errors);
+
+                List<BatchResult> results = new ArrayList<>(ids.size());
+                Set<Integer> touchedEpics = new HashSet<>();
+                String sql = "UPDATE tasks SET name=?, description=?, status=?, start_time=?, duration_min=?, epic_id=? WHERE id=?";
+                try (PreparedStatement ps = c.prepareStatement(sql)) {
+                    for (int i = 0; i < ids.size(); i++) {
+                        int id = ids.get(i);
+                        if (errors[i] != null) {
+                            results.add(BatchResult.failed(id, errors[i]));
+                            continue;
+                        }
+                        Task task = batch.get(id);
+                        task.setId(id);
+                        bindFields(ps, 1, task);
+                        ps.setInt(7, id);
+                        ps.addBatch();
+                        if (task instanceof SubTask s) {
+                            SubTask old = (SubTask) existing.get(id);
+                            touchedEpics.add(old.getEpicId());
+                            touchedEpics.add(s.getEpicId());
+                        }
+                        if (history.contains(id)) history.add(task);
+                        results.add(BatchResult.ok(id));
+                    }
+                    ps.executeBatch();
+                }
+                for (int epicId : touchedEpics) updateEpicStatus(epicId, c);
+                c.commit();
+                return results;
+            } catch (SQLException | RuntimeException e) {
+                c.rollback();
+                throw e;
             }
-            try (PreparedStatement u = c.prepareStatement("UPDATE tasks SET status=? WHERE id=?")) {
-                u.setString(1, status.name());
-                u.setInt(2, id);
-                u.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("DB updateAll failed", e);
+        }
+    }
+
+    @Override
+    public List<BatchResult> updateStatuses(Map<Integer, Status> statuses) {
+        try (Connection c = Db.getConnection()) {
+            c.setAutoCommit(false);
+            try {
+                Map<Integer, Task> existing = loadByIds(c, statuses.keySet());
+                List<BatchResult> results = new ArrayList<>(statuses.size());
+                Set<Integer> touchedEpics = new HashSet<>();
+                try (PreparedStatement ps = c.prepareStatement("UPDATE tasks SET status=? WHERE id=?")) {
+                    for (Map.Entry<Integer, Status> entry : statuses.entrySet()) {
+                        int id = entry.getKey();
+                        Task task = existing.get(id);
+                        if (task == null) {
+                            results.add(BatchResult.failed(id, "Task with ID " + id + " not found."));
+                            continue;
+                        }
+                        if (task instanceof Epic) {
+                            results.add(BatchResult.failed(id, "Epic status cannot be changed manually"));
+                            continue;
+                        }
+                        ps.setString(1, entry.getValue().name());
+                        ps.setInt(2, id);
+                        ps.addBatch();
+                        if (task instanceof SubTask s) {
+                            touchedEpics.add(s.getEpicId());
+                        }
+                        results.add(BatchResult.ok(id));
+                    }
+                    ps.executeBatch();
+                }
+                for (int epicId : touchedEpics) updateEpicStatus(epicId, c);
+                c.commit();
+                return results;
+            } catch (SQLException | RuntimeException e) {
+                c.rollback();
+                throw e;
             }
-            if ("SUBTASK".equals(type) && epicId != null) updateEpicStatus(epicId, c);
-            System.out.println("Task ID " + id +  " status successfully updated.");
         } catch (SQLException e) {
-            throw new RuntimeException(e);
+            throw new RuntimeException("DB updateStatuses failed", e);
         }
     }
 
@@ -325,7 +609,7 @@ public class PostgresTaskManager implements TaskManager {
     }
 
     @Override
-    public HashMap<Integer, Task> getAllTasks() {
+    public Map<Integer, Task> getAllTasks() {
         String sql = "SELECT * FROM tasks ORDER BY id";
         try (Connection c = Db.getConnection(); Statement st = c.createStatement(); ResultSet rs = st.executeQuery(sql)) {
             HashMap<Integer, Task> map = new HashMap<>();
@@ -340,7 +624,7 @@ public class PostgresTaskManager implements TaskManager {
     }
 
     @Override
-    public HashMap<Integer, Task> getAllEpics() {
+    public Map<Integer, Task> getAllEpics() {
         String epicsSql = "SELECT * FROM tasks WHERE type='EPIC' ORDER BY id";
         try (Connection c = Db.getConnection(); Statement st = c.createStatement(); ResultSet rs = st.executeQuery(epicsSql)) {
             HashMap<Integer, Task> map = new HashMap<>();
@@ -353,7 +637,7 @@ public class PostgresTaskManager implements TaskManager {
                         while (srs.next()) e.addSubtask(((SubTask) mapRow(srs)).getId(), (SubTask) mapRow(srs));
                     }
                 }
-                e.setStatus(calcEpicStatus(e));
+                e.setStatus(e.calculateStatus());
                 map.put(e.getId(), e);
             }
             return map;
@@ -362,32 +646,193 @@ public class PostgresTaskManager implements TaskManager {
         }
     }
 
+    // keyset pagination: the cursor becomes a condition on the sort key, so the database seeks straight
+    // to the page through idx_tasks_timeline / the primary key instead of skipping over an OFFSET
+    @Override
+    public TaskPage query(TaskQuery query) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM tasks WHERE TRUE");
+        List<Object> params = new ArrayList<>();
+        if (query.getType() != null) {
+            sql.append(" AND type = ?");
+            params.add(query.getType().name());
+        }
+        if (query.getStatus() != null) {
+            sql.append(" AND status = ?");
+            params.add(query.getStatus().name());
+        }
+        if (query.getEpicId() != null) {
+            sql.append(" AND type = 'SUBTASK' AND epic_id = ?");
+            params.add(query.getEpicId());
+        }
+        if (query.getFromMinute() != Task.NO_TIME) {
+            sql.append(" AND start_time >= ?");
+            params.add(Timestamp.valueOf(Task.toDateTime(query.getFromMinute())));
+        }
+        if (query.getToMinute() != Task.NO_TIME) {
+            sql.append(" AND start_time < ?");
+            params.add(Timestamp.valueOf(Task.toDateTime(query.getToMinute())));
+        }
+        boolean byStart = query.getOrder() == TaskQuery.Order.START_TIME;
+        if (byStart) {
+            sql.append(" AND type <> 'EPIC' AND start_time IS NOT NULL AND duration_min IS NOT NULL");
+        }
+        String cmp = query.isDescending() ? "<" : ">";
+        String dir = query.isDescending() ? " DESC" : "";
+        Task after = query.cursorKey();
+        if (after != null && byStart) {
+            sql.append(" AND (start_time, duration_min, id) ").append(cmp).append(" (?, ?, ?)");
+            params.add(Timestamp.valueOf(after.getStartTime()));
+            params.add(after.getDurationMinutes());
+            params.add(after.getId());
+        } else if (after != null) {
+            sql.append(" AND id ").append(cmp).append(" ?");
+            params.add(after.getId());
+        }
+        sql.append(byStart ? " ORDER BY start_time" + dir + ", duration_min" + dir + ", id" + dir : " ORDER BY id" + dir);
+        // one row past the page tells whether another page follows
+        sql.append(" LIMIT ?");
+        params.add(query.getLimit() + 1);
+
+        try (Connection c = Db.getConnection(); PreparedStatement ps = c.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) ps.setObject(i + 1, params.get(i));
+            List<Task> page = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) page.add(mapRow(rs));
+            }
+            if (page.size() <= query.getLimit()) return new TaskPage(page, null);
+            page.remove(page.size() - 1);
+            return new TaskPage(page, TaskQuery.cursorAfter(query.getOrder(), page.get(page.size() - 1)));
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // a single REPEATABLE READ transaction sees one database snapshot; rows are read into new objects,
+    // which nothing else holds
+    @Override
+    public TaskSnapshot snapshot() {
+        try (Connection c = Db.getConnection()) {
+            c.setAutoCommit(false);
+            c.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            c.setReadOnly(true);
+            try (Statement st = c.createStatement()) {
+                long version = snapshots.incrementAndGet();
+                LinkedHashMap<Integer, Task> tasks = new LinkedHashMap<>();
+                try (ResultSet rs = st.executeQuery("SELECT * FROM tasks ORDER BY id")) {
+                    while (rs.next()) {
+                        Task t = mapRow(rs);
+                        tasks.put(t.getId(), t);
+                    }
+                }
+                List<Task> prioritized = new ArrayList<>();
+                try (ResultSet rs = st.executeQuery(
+                        "SELECT id FROM tasks WHERE type <> 'EPIC' AND start_time IS NOT NULL ORDER BY start_time")) {
+                    while (rs.next()) prioritized.add(tasks.get(rs.getInt(1)));
+                }
+                c.commit();
+                return new TaskSnapshot(version, tasks, prioritized);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public List<Task> getHistory() {
         return history.getHistory(); }
 
+    @Override
+    public List<Task> getHistory(int offset, int limit) {
+        return history.getHistory(offset, limit); }
+
     @Override
     public TreeSet<Task> getPrioritizedTasks() {
         String sql = "SELECT * FROM tasks WHERE type <> 'EPIC' AND start_time IS NOT NULL ORDER BY start_time";
         try (Connection c = Db.getConnection(); Statement st = c.createStatement(); ResultSet rs = st.executeQuery(sql)) {
-            TreeSet<Task> set = new TreeSet<>(Comparator.comparing(Task::getStartTime));
+            TreeSet<Task> set = new TreeSet<>(Comparator.comparingLong(Task::getStartMinute));
             while (rs.next()) set.add(mapRow(rs));
             return set;
         } catch (SQLException e) { throw new RuntimeException(e); }
     }
 
-    private Status calcEpicStatus(Epic e) {
-        if (e.subtasks == null || e.subtasks.isEmpty()) return Status.NEW;
-        int total = e.subtasks.size();
-        long newCnt  = e.subtasks.values().stream().filter(t -> t.getStatus()==Status.NEW).count();
-        long doneCnt = e.subtasks.values().stream().filter(t -> t.getStatus()==Status.DONE).count();
-        if (doneCnt == total) return Status.DONE;
-        if (newCnt  == total) return Status.NEW;
-        return Status.IN_PROGRESS;
+    // both halves are range scans on idx_tasks_start_time: the one task starting last before the window,
+    // which is the only one that can run into it, and the tasks starting inside the window. Ties on the
+    // start are broken as in TIMELINE_ORDER, so the last one is the longest, which is the one that may overlap
+    @Override
+    public NavigableSet<Task> getTasksBetween(LocalDateTime from, LocalDateTime to) {
+        String sql = """
+            (SELECT * FROM tasks
+              WHERE type <> 'EPIC' AND duration_min IS NOT NULL AND start_time < ?
+              ORDER BY start_time DESC, duration_min DESC, id DESC LIMIT 1)
+            UNION ALL
+            (SELECT * FROM tasks
+              WHERE type <> 'EPIC' AND duration_min IS NOT NULL AND start_time >= ? AND start_time < ?)
+            """;
+        TreeSet<Task> window = new TreeSet<>(InMemoryTaskManager.TIMELINE_ORDER);
+        long fromMinute = Task.toMinute(Objects.requireNonNull(from));
+        long toMinute = Task.toMinute(Objects.requireNonNull(to));
+        if (fromMinute >= toMinute) return Collections.unmodifiableNavigableSet(window);
+        try (Connection c = Db.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+            Timestamp start = Timestamp.valueOf(Task.toDateTime(fromMinute));
+            ps.setTimestamp(1, start);
+            ps.setTimestamp(2, start);
+            ps.setTimestamp(3, Timestamp.valueOf(Task.toDateTime(toMinute)));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Task t = mapRow(rs);
+                    if (t.getStartMinute() >= fromMinute || t.getEndMinute() > fromMinute) window.add(t);
+                }
+            }
+            return Collections.unmodifiableNavigableSet(window);
+        } catch (SQLException e) { throw new RuntimeException(e); }
+    }
+
+    // gaps come from LAG over the timeline from the last task starting at or before earliest on, each
+    // clamped to earliest; the open-ended gap after the last task closes the list, so a row always comes back
+    @Override
+    public LocalDateTime findFreeSlot(Duration duration, LocalDateTime earliest) {
+        String sql = """
+            WITH timeline AS (
+                SELECT start_time, start_time + duration_min * INTERVAL '1 minute' AS end_time
+                  FROM tasks
+                 WHERE type <> 'EPIC' AND start_time IS NOT NULL AND duration_min IS NOT NULL
+                   AND start_time >= COALESCE((SELECT MAX(start_time) FROM tasks
+                                                WHERE type <> 'EPIC' AND duration_min IS NOT NULL
+                                                  AND start_time <= ?), '-infinity')
+            ), gaps AS (
+                SELECT GREATEST(?, LAG(end_time) OVER (ORDER BY start_time, end_time)) AS gap_start,
+                       start_time AS gap_end
+                  FROM timeline
+                UNION ALL
+                SELECT GREATEST(?, MAX(end_time)), NULL FROM timeline
+            )
+            SELECT gap_start FROM gaps
+             WHERE gap_end IS NULL OR gap_end - gap_start >= ? * INTERVAL '1 minute'
+             ORDER BY gap_start
+             LIMIT 1
+            """;
+        Timestamp from = Timestamp.valueOf(Task.toDateTime(InMemoryTaskManager.slotStart(earliest)));
+        long minutes = InMemoryTaskManager.slotMinutes(duration);
+        try (Connection c = Db.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setTimestamp(1, from);
+            ps.setTimestamp(2, from);
+            ps.setTimestamp(3, from);
+            ps.setLong(4, minutes);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getTimestamp(1).toLocalDateTime();
+            }
+        } catch (SQLException e) { throw new RuntimeException(e); }
+    }
+
+    @Override
+    public void addTaskAutoScheduled(Task task, LocalDateTime earliest) {
+        task.setStartTime(findFreeSlot(InMemoryTaskManager.autoScheduledDuration(task), earliest));
+        addTask(task);
     }
 
     public boolean checkIntersection(Task task) {
-        if (task.getStartTime() == null || task.getEndTime() == null) return false;
+        if (!task.isScheduled()) return false;
         String sql = """
             SELECT 1 FROM tasks
              WHERE type <> 'EPIC'
@@ -399,7 +844,7 @@ public class PostgresTaskManager implements TaskManager {
              LIMIT 1
             """;
         try (Connection c = Db.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-            if (task.getId()!=null) ps.setInt(1, task.getId()); else ps.setNull(1, Types.INTEGER);
+            if (task.getId() != -1) ps.setInt(1, task.getId()); else ps.setNull(1, Types.INTEGER);
             ps.setTimestamp(2, Timestamp.valueOf(task.getEndTime()));
             ps.setTimestamp(3, Timestamp.valueOf(task.getStartTime()));
             try (ResultSet rs = ps.executeQuery()) {
@@ -0,0 +1,68 @@
+package manager;
+
+import model.Status;
+import model.Task;
+
+// A change made to a manager, as published to its EventBus. The status is the one the task had when the
+// event was published; the task itself is the manager's own object and may have changed since.
+public final class TaskEvent {
+
+    public enum Type {
+        ADDED,
+        UPDATED,
+        DELETED,
+        STATUS_CHANGED,
+        VIEWED,
+        // every task was removed at once; the event carries no task
+        CLEARED
+    }
+
+    private final Type type;
+    private final int taskId;
+    private final Task task;
+    private final Status status;
+
+    public TaskEvent(Type type, Task task) {
+        this(type, task == null ? -1 : task.getId(), task, task == null ? null : task.getStatus());
+    }
+
+    TaskEvent(Type type, int taskId, Task task, Status status) {
+        this.type = type;
+        this.taskId = taskId;
+        this.task = task;
+        this.status = status;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getTaskId() {
+        return taskId;
+    }
+
+    public Task getTask() {
+        return task;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    // events that may be folded into one another: changes of the same task, or views of it
+    long coalescingKey() {
+        return type == Type.CLEARED ? Long.MIN_VALUE : (long) taskId << 1 | (type == Type.VIEWED ? 1 : 0);
+    }
+
+    // a later event with the same key folded into this one: the task is still new if it was added and
+    // not deleted since, otherwise the later change is what counts
+    TaskEvent coalesce(TaskEvent later) {
+        Type merged = type == Type.ADDED && later.type != Type.DELETED ? Type.ADDED : later.type;
+        return new TaskEvent(merged, later.taskId, later.task, later.status);
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + taskId + (status == null ? "" : " " + status);
+    }
+}
\ No newline at end of file
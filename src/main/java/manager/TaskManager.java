@@ -4,15 +4,19 @@ import model.Status;
 import model.SubTask;
 import model.Task;
 
-import java.util.HashMap;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
 import java.util.TreeSet;
 
 public interface TaskManager {
 
     void addTask(Task task);
 
-    List<SubTask> getSubTasks();
+    Collection<SubTask> getSubTasks();
 
     Task getTask(int id);
 
@@ -24,18 +28,58 @@ public interface TaskManager {
 
     void updateStatus(int id, Status status);
 
+    // updateTask, deleteByID and updateStatus with the outcome returned instead of printed; an overlap
+    // comes back as a CONFLICT rather than being thrown
+    OperationResult update(int id, Task task);
+
+    OperationResult delete(int id);
+
+    OperationResult changeStatus(int id, Status status);
+
+    // the task with this id, or null, without recording a view in the history
+    Task peek(int id);
+
+    boolean exists(int id);
+
+    // batch variants of addTask, updateTask and updateStatus: the batch is validated in one pass, every
+    // affected epic is recalculated once and the result is persisted once. Each item gets its own result,
+    // in the iteration order of the argument, so a failing item does not abort the rest of the batch
+    List<BatchResult> addAll(Collection<? extends Task> tasks);
+
+    List<BatchResult> updateAll(Map<Integer, ? extends Task> tasks);
+
+    List<BatchResult> updateStatuses(Map<Integer, Status> statuses);
+
     void deleteAllTasks();
 
     void printAllTasks();
 
     void printHistory();
 
-    HashMap<Integer, Task> getAllTasks();
+    Map<Integer, Task> getAllTasks();
 
-    HashMap<Integer, Task> getAllEpics();
+    Map<Integer, Task> getAllEpics();
 
     List<Task> getHistory();
 
+    // a page of getHistory, oldest first
+    List<Task> getHistory(int offset, int limit);
+
     TreeSet<Task> getPrioritizedTasks();
 
+    // scheduled tasks that take up any time in [from, to), including one that starts earlier and runs into it
+    NavigableSet<Task> getTasksBetween(LocalDateTime from, LocalDateTime to);
+
+    // start of the earliest stretch of free time of the given length at or after earliest, now when it is null
+    LocalDateTime findFreeSlot(Duration duration, LocalDateTime earliest);
+
+    // gives the task the start time found by findFreeSlot for its duration and adds it
+    void addTaskAutoScheduled(Task task, LocalDateTime earliest);
+
+    // one page of the tasks matching the query, in the query's order
+    TaskPage query(TaskQuery query);
+
+    // consistent read-only view of all tasks; it does not change when the manager is written to
+    TaskSnapshot snapshot();
+
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+package manager;
+
+import model.Task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+// one page of a TaskManager.query result
+public final class TaskPage {
+
+    private final List<Task> tasks;
+    private final String nextCursor;
+
+    TaskPage(List<Task> tasks, String nextCursor) {
+        this.tasks = Collections.unmodifiableList(tasks);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Task> getTasks() {
+        return tasks;
+    }
+
+    // pass to TaskQuery.after for the following page; null on the last page
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    // fills a page from candidates that are already in query order, reading one task past the limit
+    // to learn whether another page follows
+    static TaskPage collect(TaskQuery query, Iterator<? extends Task> candidates) {
+        List<Task> page = new ArrayList<>();
+        while (candidates.hasNext()) {
+            Task task = candidates.next();
+            if (!query.matches(task)) {
+                continue;
+            }
+            if (page.size() == query.getLimit()) {
+                return new TaskPage(page, TaskQuery.cursorAfter(query.getOrder(), page.get(page.size() - 1)));
+            }
+            page.add(task);
+        }
+        return new TaskPage(page, null);
+    }
+}
\ No newline at end of file
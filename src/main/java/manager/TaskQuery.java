@@ -0,0 +1,173 @@
+package manager;
+
+import model.Status;
+import model.SubTask;
+import model.Task;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+// Filter, order and page for TaskManager.query. Every filter is optional:
+// TaskQuery.all().type(TaskType.SUBTASK).status(Status.NEW).limit(20).after(page.getNextCursor())
+public final class TaskQuery {
+
+    public enum Order {
+        ID,
+        // only tasks on the timeline, i.e. scheduled tasks and subtasks, in the order of getPrioritizedTasks
+        START_TIME
+    }
+
+    private TaskType type;
+    private Status status;
+    private Integer epicId;
+    private long fromMinute = Task.NO_TIME;
+    private long toMinute = Task.NO_TIME;
+    private Order order = Order.ID;
+    private boolean descending;
+    private int limit = 50;
+    private String cursor;
+
+    private TaskQuery() {
+    }
+
+    public static TaskQuery all() {
+        return new TaskQuery();
+    }
+
+    public TaskQuery type(TaskType type) {
+        this.type = type;
+        return this;
+    }
+
+    public TaskQuery status(Status status) {
+        this.status = status;
+        return this;
+    }
+
+    // subtasks of the given epic
+    public TaskQuery epic(int epicId) {
+        this.epicId = epicId;
+        return this;
+    }
+
+    // tasks starting at or after from and before to; either bound may be null
+    public TaskQuery startingBetween(LocalDateTime from, LocalDateTime to) {
+        this.fromMinute = Task.toMinute(from);
+        this.toMinute = Task.toMinute(to);
+        return this;
+    }
+
+    public TaskQuery orderBy(Order order) {
+        this.order = order;
+        return this;
+    }
+
+    public TaskQuery descending() {
+        this.descending = true;
+        return this;
+    }
+
+    public TaskQuery limit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive: " + limit);
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    // continues after the page that returned this cursor; null starts from the beginning
+    public TaskQuery after(String cursor) {
+        this.cursor = cursor;
+        return this;
+    }
+
+    TaskType getType() {
+        return type;
+    }
+
+    Status getStatus() {
+        return status;
+    }
+
+    Integer getEpicId() {
+        return epicId;
+    }
+
+    long getFromMinute() {
+        return fromMinute;
+    }
+
+    long getToMinute() {
+        return toMinute;
+    }
+
+    boolean hasTimeRange() {
+        return fromMinute != Task.NO_TIME || toMinute != Task.NO_TIME;
+    }
+
+    Order getOrder() {
+        return order;
+    }
+
+    boolean isDescending() {
+        return descending;
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    boolean matches(Task task) {
+        if (type != null && TaskStore.typeOf(task) != type) {
+            return false;
+        }
+        if (status != null && task.getStatus() != status) {
+            return false;
+        }
+        if (epicId != null && !(task instanceof SubTask subtask && subtask.getEpicId() == epicId)) {
+            return false;
+        }
+        if (hasTimeRange()) {
+            long start = task.getStartMinute();
+            if (start == Task.NO_TIME) {
+                return false;
+            }
+            if (fromMinute != Task.NO_TIME && start < fromMinute) {
+                return false;
+            }
+            if (toMinute != Task.NO_TIME && start >= toMinute) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // a cursor carries the sort key of the last task of a page, so paging stays correct when that task
+    // is deleted in the meantime; clients only pass it back
+    static String cursorAfter(Order order, Task last) {
+        String key = order == Order.ID
+                ? "I:" + last.getId()
+                : "S:" + last.getStartMinute() + ":" + last.getDurationMinutes() + ":" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // the key the page starts after, as a bare task, or null for the first page
+    Task cursorKey() {
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+            if (order == Order.ID && parts.length == 2 && parts[0].equals("I")) {
+                return Task.timeKey(Task.NO_TIME, 0, Integer.parseInt(parts[1]));
+            }
+            if (order == Order.START_TIME && parts.length == 4 && parts[0].equals("S")) {
+                return Task.timeKey(Long.parseLong(parts[1]), Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+            }
+        } catch (IllegalArgumentException e) {
+            // falls through to the error below
+        }
+        throw new IllegalArgumentException("Invalid cursor");
+    }
+}
\ No newline at end of file
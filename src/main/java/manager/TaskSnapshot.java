@@ -0,0 +1,68 @@
+package manager;
+
+import model.Epic;
+import model.SubTask;
+import model.Task;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+// Point-in-time, read-only view of a manager. The set of tasks and their order stay fixed no matter
+// what is written afterwards, so several reads against one snapshot are always consistent. The tasks
+// are copies made when they were last written rather than the manager's own objects, so later status
+// changes do not reach them either; they are shared by every reader of the snapshot and must not be
+// modified.
+public final class TaskSnapshot {
+
+    private final long version;
+    private final Map<Integer, Task> tasks;
+    private final Collection<Task> prioritizedTasks;
+
+    TaskSnapshot(long version, Map<Integer, Task> tasks, Collection<Task> prioritizedTasks) {
+        this.version = version;
+        this.tasks = Collections.unmodifiableMap(tasks);
+        this.prioritizedTasks = Collections.unmodifiableCollection(prioritizedTasks);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    // unlike TaskManager.getTask, reading from a snapshot does not touch the history
+    public Task getTask(int id) {
+        return tasks.get(id);
+    }
+
+    public Map<Integer, Task> getAllTasks() {
+        return tasks;
+    }
+
+    public Collection<Task> getPrioritizedTasks() {
+        return prioritizedTasks;
+    }
+
+    // the task as it is now, an epic together with copies of its subtasks; the caller must keep the task
+    // from being changed while it is copied
+    static Task freeze(Task task) {
+        Task copy;
+        if (task instanceof Epic epic) {
+            HashMap<Integer, Task> subtasks = new HashMap<>();
+            for (Task subtask : epic.subtasks.values()) {
+                subtasks.put(subtask.getId(), freeze(subtask));
+            }
+            copy = new Epic(epic.getName(), epic.getDescription(), epic.getStatus(), subtasks);
+        } else {
+            copy = task instanceof SubTask subtask
+                    ? new SubTask(task.getName(), task.getDescription(), task.getStatus(), subtask.getEpicId())
+                    : new Task(task.getName(), task.getDescription(), task.getStatus());
+            copy.setStartMinute(task.getStartMinute());
+            if (task.getDurationMinutes() >= 0) {
+                copy.setDuration(task.getDurationMinutes());
+            }
+        }
+        copy.setId(task.getId());
+        return copy;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,295 @@
+package manager;
+
+import model.Epic;
+import model.Status;
+import model.SubTask;
+import model.Task;
+
+import java.util.*;
+
+// Tasks stored in pages of 64 slots indexed by the low bits of their id. Pages are found by page number
+// in an open-addressing table, so lookups, inserts and removals are a probe and an array access, with
+// no boxing of the key and no per-entry node. Ids come from a growing counter, so pages are mostly full;
+// a page is dropped as soon as its last task is gone, so memory follows the tasks that are alive rather
+// than the highest id ever handed out, and a stray large id costs a single page. Every page keeps one
+// bitmask of its occupied slots and one per type and per status, which serve as indexes for filtered
+// queries and let them skip 64 ids at a time.
+final class TaskStore<T extends Task> {
+
+    private static final int PAGE_BITS = 6;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int INITIAL_TABLE_SIZE = 16;
+
+    private static final class Page {
+        final int number;
+        final Task[] slots = new Task[PAGE_SIZE];
+        long occupied;
+        final long[] byType = new long[TaskType.values().length];
+        final long[] byStatus = new long[Status.values().length];
+
+        Page(int number) {
+            this.number = number;
+        }
+    }
+
+    // open addressing with linear probing; a page's own number is its key
+    private Page[] table = new Page[INITIAL_TABLE_SIZE];
+    private int pageCount;
+    // page numbers in order, for walks by id; only changed when a page comes or goes
+    private final TreeSet<Integer> pageNumbers = new TreeSet<>();
+    private int size;
+    private final Map<Integer, T> view = new MapView();
+
+    @SuppressWarnings("unchecked")
+    T get(int id) {
+        if (id < 0) {
+            return null;
+        }
+        Page page = page(id >>> PAGE_BITS);
+        return page == null ? null : (T) page.slots[id & (PAGE_SIZE - 1)];
+    }
+
+    static boolean isValidId(int id) {
+        return id >= 0;
+    }
+
+    boolean contains(int id) {
+        return get(id) != null;
+    }
+
+    T put(int id, T task) {
+        if (!isValidId(id)) {
+            throw new IllegalArgumentException("Task id must not be negative: " + id);
+        }
+        Page page = page(id >>> PAGE_BITS);
+        if (page == null) {
+            page = addPage(id >>> PAGE_BITS);
+        }
+        int slot = id & (PAGE_SIZE - 1);
+        long bit = 1L << slot;
+        @SuppressWarnings("unchecked")
+        T previous = (T) page.slots[slot];
+        page.slots[slot] = task;
+        if (previous == null) {
+            page.occupied |= bit;
+            size++;
+        } else {
+            page.byType[typeOf(previous).ordinal()] &= ~bit;
+        }
+        page.byType[typeOf(task).ordinal()] |= bit;
+        setStatus(page, bit, task.getStatus());
+        return previous;
+    }
+
+    // must be called when a stored task's status is changed in place
+    void statusChanged(int id, Status status) {
+        Page page = id < 0 ? null : page(id >>> PAGE_BITS);
+        if (page != null) {
+            setStatus(page, 1L << (id & (PAGE_SIZE - 1)), status);
+        }
+    }
+
+    private static void setStatus(Page page, long bit, Status status) {
+        for (int i = 0; i < page.byStatus.length; i++) {
+            page.byStatus[i] &= ~bit;
+        }
+        if (status != null) {
+            page.byStatus[status.ordinal()] |= bit;
+        }
+    }
+
+    T remove(int id) {
+        Page page = id < 0 ? null : page(id >>> PAGE_BITS);
+        if (page == null) {
+            return null;
+        }
+        int slot = id & (PAGE_SIZE - 1);
+        @SuppressWarnings("unchecked")
+        T previous = (T) page.slots[slot];
+        if (previous != null) {
+            long bit = 1L << slot;
+            page.slots[slot] = null;
+            page.occupied &= ~bit;
+            page.byType[typeOf(previous).ordinal()] &= ~bit;
+            setStatus(page, bit, null);
+            size--;
+            if (page.occupied == 0) {
+                removePage(page.number);
+            }
+        }
+        return previous;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        table = new Page[INITIAL_TABLE_SIZE];
+        pageCount = 0;
+        pageNumbers.clear();
+        size = 0;
+    }
+
+    // first id at or after from (at or before it when descending) whose task has the given type and
+    // status, null meaning any, or -1. Within a page the masks are combined and the first match is a bit
+    // scan; pages without one are passed over whole
+    int nextMatching(int from, boolean descending, TaskType type, Status status) {
+        if (from < 0) {
+            return -1;
+        }
+        int number = from >>> PAGE_BITS;
+        int offset = from & (PAGE_SIZE - 1);
+        Page page = page(number);
+        while (true) {
+            if (page != null) {
+                long matches = page.occupied;
+                if (type != null) {
+                    matches &= page.byType[type.ordinal()];
+                }
+                if (status != null) {
+                    matches &= page.byStatus[status.ordinal()];
+                }
+                // only the slots on the near side of from count
+                matches &= descending ? -1L >>> (PAGE_SIZE - 1 - offset) : -1L << offset;
+                if (matches != 0) {
+                    int slot = descending ? PAGE_SIZE - 1 - Long.numberOfLeadingZeros(matches)
+                            : Long.numberOfTrailingZeros(matches);
+                    return (number << PAGE_BITS) | slot;
+                }
+            }
+            Integer next = descending ? pageNumbers.lower(number) : pageNumbers.higher(number);
+            if (next == null) {
+                return -1;
+            }
+            number = next;
+            offset = descending ? PAGE_SIZE - 1 : 0;
+            page = page(number);
+        }
+    }
+
+    private Page page(int number) {
+        int mask = table.length - 1;
+        for (int i = mix(number) & mask; table[i] != null; i = (i + 1) & mask) {
+            if (table[i].number == number) {
+                return table[i];
+            }
+        }
+        return null;
+    }
+
+    private Page addPage(int number) {
+        if ((pageCount + 1) * 2 > table.length) {
+            Page[] old = table;
+            table = new Page[old.length * 2];
+            for (Page page : old) {
+                if (page != null) {
+                    insert(page);
+                }
+            }
+        }
+        Page page = new Page(number);
+        insert(page);
+        pageCount++;
+        pageNumbers.add(number);
+        return page;
+    }
+
+    private void insert(Page page) {
+        int mask = table.length - 1;
+        int i = mix(page.number) & mask;
+        while (table[i] != null) {
+            i = (i + 1) & mask;
+        }
+        table[i] = page;
+    }
+
+    // the entries after the freed slot that probed past it move back, so lookups never need tombstones
+    private void removePage(int number) {
+        int mask = table.length - 1;
+        int i = mix(number) & mask;
+        while (table[i].number != number) {
+            i = (i + 1) & mask;
+        }
+        table[i] = null;
+        for (int j = (i + 1) & mask; table[j] != null; j = (j + 1) & mask) {
+            int home = mix(table[j].number) & mask;
+            // the entry at j may fill the gap at i unless its home lies cyclically in (i, j]
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                table[i] = table[j];
+                table[j] = null;
+                i = j;
+            }
+        }
+        pageCount--;
+        pageNumbers.remove(number);
+    }
+
+    // consecutive page numbers would otherwise fill runs of the table and make probes long
+    private static int mix(int number) {
+        int h = number * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    static TaskType typeOf(Task task) {
+        if (task instanceof Epic) {
+            return TaskType.EPIC;
+        }
+        return task instanceof SubTask ? TaskType.SUBTASK : TaskType.TASK;
+    }
+
+    // read-only Map over the store, in id order; boxing only happens when it is used
+    Map<Integer, T> asMap() {
+        return view;
+    }
+
+    private final class MapView extends AbstractMap<Integer, T> {
+
+        @Override
+        public T get(Object key) {
+            return key instanceof Integer id ? TaskStore.this.get(id) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Set<Entry<Integer, T>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<Integer, T>> iterator() {
+                    return new Iterator<>() {
+                        private int next = nextMatching(0, false, null, null);
+
+                        @Override
+                        public boolean hasNext() {
+                            return next >= 0;
+                        }
+
+                        @Override
+                        public Entry<Integer, T> next() {
+                            if (next < 0) {
+                                throw new NoSuchElementException();
+                            }
+                            int id = next;
+                            next = id == Integer.MAX_VALUE ? -1 : nextMatching(id + 1, false, null, null);
+                            return new SimpleImmutableEntry<>(id, TaskStore.this.get(id));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+    }
+}
\ No newline at end of file
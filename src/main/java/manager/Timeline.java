@@ -0,0 +1,89 @@
+package manager;
+
+import model.Task;
+
+import java.util.Collections;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+// The prioritized timeline: scheduled tasks in TIMELINE_ORDER, with an index of the free time between them
+// kept in step by every add and remove. The set is only ever changed through these methods; everyone else
+// gets the read-only view, so nothing can move a task without the index noticing.
+final class Timeline {
+
+    private final TreeSet<Task> tasks = new TreeSet<>(InMemoryTaskManager.TIMELINE_ORDER);
+    private final NavigableSet<Task> view = Collections.unmodifiableNavigableSet(tasks);
+    private final GapIndex gaps = new GapIndex();
+
+    // a live, read-only view of the timeline
+    NavigableSet<Task> tasks() {
+        return view;
+    }
+
+    Task lower(Task task) {
+        return tasks.lower(task);
+    }
+
+    // first minute at or after earliest from which the given number of minutes is free
+    long firstFreeMinute(long earliest, long minutes) {
+        if (minutes == 0) {
+            // an empty slot also fits where one task ends and the next begins, which is no gap at all
+            Task running = tasks.lower(InMemoryTaskManager.timelineProbe(earliest));
+            return running != null && running.getEndMinute() > earliest ? running.getEndMinute() : earliest;
+        }
+        return gaps.firstFit(earliest, minutes);
+    }
+
+    boolean add(Task task) {
+        if (!tasks.add(task)) {
+            return false;
+        }
+        // the task splits the gap between its neighbours
+        long gapStart = gapStartBefore(task);
+        long gapEnd = gapEndAfter(task);
+        if (gapEnd > gapStart) {
+            gaps.remove(gapStart);
+        }
+        if (task.getStartMinute() > gapStart) {
+            gaps.add(gapStart, task.getStartMinute());
+        }
+        if (gapEnd > task.getEndMinute()) {
+            gaps.add(task.getEndMinute(), gapEnd);
+        }
+        return true;
+    }
+
+    boolean remove(Task task) {
+        if (!tasks.remove(task)) {
+            return false;
+        }
+        // the gaps on both sides of the task merge into one
+        long gapStart = gapStartBefore(task);
+        long gapEnd = gapEndAfter(task);
+        if (task.getStartMinute() > gapStart) {
+            gaps.remove(gapStart);
+        }
+        if (gapEnd > task.getEndMinute()) {
+            gaps.remove(task.getEndMinute());
+        }
+        if (gapEnd > gapStart) {
+            gaps.add(gapStart, gapEnd);
+        }
+        return true;
+    }
+
+    void clear() {
+        tasks.clear();
+        gaps.clear();
+    }
+
+    private long gapStartBefore(Task task) {
+        Task previous = tasks.lower(task);
+        return previous == null ? Long.MIN_VALUE : previous.getEndMinute();
+    }
+
+    private long gapEndAfter(Task task) {
+        Task next = tasks.higher(task);
+        return next == null ? Long.MAX_VALUE : next.getStartMinute();
+    }
+}
\ No newline at end of file
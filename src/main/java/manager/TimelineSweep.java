@@ -0,0 +1,69 @@
+package manager;
+
+import model.Task;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+// Validates a whole batch of time slots in one pass: the batch is sorted by start and swept once, so each
+// slot costs one lookup in the timeline plus a comparison with the furthest end reached by the batch so far.
+final class TimelineSweep {
+
+    static final String OVERLAP = "Task overlaps in time with another task";
+
+    private TimelineSweep() {
+    }
+
+    // slots.get(i) is the new slot of item i; null and unscheduled slots are not checked. previous.get(i),
+    // when given, is the slot the item held before, already taken off the timeline by the caller.
+    // A rejected item gets its previous slot back, which may collide with an item accepted into it,
+    // so the sweep repeats until nothing more is rejected. Returns the rejected indexes; the timeline
+    // ends up holding the restored slots, adding the accepted ones is left to the caller.
+    static BitSet sweep(List<? extends Task> slots, List<? extends Task> previous, NavigableSet<Task> timeline) {
+        return sweep(slots, previous, timeline, timeline::add);
+    }
+
+    // for a timeline that is read through a view and changed only through restore
+    static BitSet sweep(List<? extends Task> slots, List<? extends Task> previous, NavigableSet<Task> timeline,
+                        Consumer<Task> restore) {
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < slots.size(); i++) {
+            Task slot = slots.get(i);
+            if (slot != null && slot.isScheduled()) {
+                order.add(i);
+            }
+        }
+        // the sort is stable, so of two identical slots the earlier item wins
+        order.sort(Comparator.comparingLong((Integer i) -> slots.get(i).getStartMinute())
+                .thenComparingInt(i -> slots.get(i).getDurationMinutes()));
+
+        BitSet rejected = new BitSet(slots.size());
+        boolean restored = true;
+        while (restored) {
+            restored = false;
+            long reach = Long.MIN_VALUE;
+            for (int i : order) {
+                if (rejected.get(i)) {
+                    continue;
+                }
+                Task slot = slots.get(i);
+                if (slot.getStartMinute() < reach || overlapsTimeline(slot, timeline)) {
+                    rejected.set(i);
+                    Task old = previous == null ? null : previous.get(i);
+                    if (old != null && old.isScheduled()) {
+                        restore.accept(old);
+                        restored = true;
+                    }
+                    continue;
+                }
+                reach = Math.max(reach, slot.getEndMinute());
+            }
+        }
+        return rejected;
+    }
+
+    private static boolean overlapsTimeline(Task slot, NavigableSet<Task> timeline) {
+        Task candidate = timeline.lower(InMemoryTaskManager.timelineProbe(slot.getEndMinute()));
+        return candidate != null && candidate.getEndMinute() > slot.getStartMinute();
+    }
+}
\ No newline at end of file
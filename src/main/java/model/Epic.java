@@ -2,11 +2,19 @@ package model;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.TreeMap;
 
 public class Epic extends Task {
 
     public HashMap<Integer, Task> subtasks = new HashMap<>();
-    protected LocalDateTime endTime;
+    protected transient long endMinute = NO_TIME;
+    // subtask counts per status, adjusted on every change so the epic status never needs a recount
+    private transient int newCount;
+    private transient int inProgressCount;
+    private transient int doneCount;
+    // start and end minutes of the scheduled subtasks, kept as sorted multisets (minute -> number of subtasks)
+    private transient TreeMap<Long, Integer> subtaskStarts = new TreeMap<>();
+    private transient TreeMap<Long, Integer> subtaskEnds = new TreeMap<>();
 
     public Epic(String name, String description) {
         super(name, description);
@@ -18,11 +26,71 @@ public class Epic extends Task {
         super(name, description);
         this.setStatus(status);
         this.subtasks = (subtasks != null) ? subtasks : new HashMap<>();
+        for (Task subtask : this.subtasks.values()) {
+            countStatus(subtask.getStatus(), 1);
+            trackTimeWindow(subtask, 1);
+        }
     }
 
     public void addSubtask(int subtaskId, Task task) {
-        subtasks.put(subtaskId, task);
-        getEndTime();
+        Task previous = subtasks.put(subtaskId, task);
+        if (previous != null) {
+            countStatus(previous.getStatus(), -1);
+            trackTimeWindow(previous, -1);
+        }
+        countStatus(task.getStatus(), 1);
+        trackTimeWindow(task, 1);
+    }
+
+    // must be called whenever the status of one of the epic's subtasks changes in place
+    public void subtaskStatusChanged(Status oldStatus, Status newStatus) {
+        countStatus(oldStatus, -1);
+        countStatus(newStatus, 1);
+    }
+
+    // takes over the subtasks of the epic this one replaces
+    public void inheritSubtasks(Epic previous) {
+        this.subtasks = previous.subtasks;
+        this.newCount = previous.newCount;
+        this.inProgressCount = previous.inProgressCount;
+        this.doneCount = previous.doneCount;
+        this.subtaskStarts = previous.subtaskStarts;
+        this.subtaskEnds = previous.subtaskEnds;
+        this.startMinute = previous.startMinute;
+        this.endMinute = previous.endMinute;
+    }
+
+    public Status calculateStatus() {
+        if (newCount == subtasks.size()) {
+            return Status.NEW;
+        } else if (doneCount == subtasks.size()) {
+            return Status.DONE;
+        }
+        return Status.IN_PROGRESS;
+    }
+
+    private void trackTimeWindow(Task subtask, int delta) {
+        if (!subtask.isScheduled()) {
+            return;
+        }
+        adjust(subtaskStarts, subtask.getStartMinute(), delta);
+        adjust(subtaskEnds, subtask.getEndMinute(), delta);
+        this.startMinute = subtaskStarts.isEmpty() ? NO_TIME : subtaskStarts.firstKey();
+        this.endMinute = subtaskEnds.isEmpty() ? NO_TIME : subtaskEnds.lastKey();
+    }
+
+    private static void adjust(TreeMap<Long, Integer> multiset, long minute, int delta) {
+        multiset.merge(minute, delta, (count, change) -> count + change == 0 ? null : count + change);
+    }
+
+    private void countStatus(Status status, int delta) {
+        if (status == Status.NEW) {
+            newCount += delta;
+        } else if (status == Status.IN_PROGRESS) {
+            inProgressCount += delta;
+        } else if (status == Status.DONE) {
+            doneCount += delta;
+        }
     }
 
     @Override
@@ -32,31 +100,21 @@ public class Epic extends Task {
     }
 
     public void removeSubTask(int id) {
-        subtasks.remove(id);
-        if (!subtasks.isEmpty()) {
-            getEndTime();
+        Task removed = subtasks.remove(id);
+        if (removed != null) {
+            countStatus(removed.getStatus(), -1);
+            trackTimeWindow(removed, -1);
         }
     }
 
+    @Override
+    public long getEndMinute() {
+        return endMinute;
+    }
+
     @Override
     public LocalDateTime getEndTime() {
-        this.startTime = null;
-        this.endTime = null;
-
-        for (Task subtask : subtasks.values()) {
-            if (subtask.startTime != null && subtask.duration != null) {
-                if (startTime == null || subtask.startTime.isBefore(startTime)) {
-                    this.startTime = subtask.startTime;
-                }
-                if (endTime == null) {
-                    endTime = subtask.startTime.plus(subtask.duration);
-                }
-                if (subtask.startTime.plus(subtask.duration).isAfter(endTime)) {
-                    endTime = subtask.startTime.plus(subtask.duration);
-                }
-            }
-        }
-        return endTime;
+        return toDateTime(endMinute);
     }
 
 }
\ No newline at end of file
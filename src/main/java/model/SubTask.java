@@ -27,7 +27,7 @@ public class SubTask extends Task {
     @Override
     public String toString() {
         return this.getId() + ",SUBTASK," + this.getName() + "," + this.getStatus() +
-                "," + this.getDescription() + "," + epicId + "," + this.getStartTime() + "," + this.duration.toMinutes();
+                "," + this.getDescription() + "," + epicId + "," + this.getStartTime() + "," + durationField();
     }
 
 
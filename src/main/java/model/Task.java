@@ -2,16 +2,23 @@ package model;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.Objects;
+import java.time.ZoneOffset;
 
 public class Task {
 
+    // marks a task without a start time or without a duration
+    public static final long NO_TIME = Long.MIN_VALUE;
+    private static final int NO_DURATION = -1;
+
     protected String name;
     protected String description;
-    protected Integer id = -1;
+    protected int id = -1;
     protected Status status;
-    protected Duration duration;
-    protected LocalDateTime startTime;
+    // the schedule is kept in whole minutes since the epoch (UTC) rather than as LocalDateTime/Duration
+    // objects: a task is then a single small object, and comparing or overlapping tasks does no allocation.
+    // JSON still carries them as startTime and duration, see HttpTaskServer
+    protected transient long startMinute = NO_TIME;
+    protected transient int durationMinutes = NO_DURATION;
 
 
     public Task(String name, String description) {
@@ -33,8 +40,17 @@ public class Task {
         this.name = name;
         this.description = description;
         this.status = status;
-        this.startTime = startTime;
-        this.duration = duration;
+        setStartTime(startTime);
+        setDuration(duration);
+    }
+
+    // bare task occupying the given minutes, for use as a search key in time-ordered collections
+    public static Task timeKey(long startMinute, int durationMinutes, int id) {
+        Task key = new Task(null, null);
+        key.startMinute = startMinute;
+        key.durationMinutes = durationMinutes;
+        key.id = id;
+        return key;
     }
 
     public void setId(int id) {
@@ -42,7 +58,7 @@ public class Task {
         this.id = id;
     }
 
-    public Integer getId() {
+    public int getId() {
         return id;
     }
 
@@ -59,11 +75,47 @@ public class Task {
     }
 
     public Duration getDuration() {
-        return duration;
+        return durationMinutes == NO_DURATION ? null : Duration.ofMinutes(durationMinutes);
     }
 
     public void setDuration(int minutes) {
-        this.duration = Duration.ofMinutes(minutes);
+        if (minutes < 0) {
+            throw new IllegalArgumentException("Duration must not be negative: " + minutes);
+        }
+        this.durationMinutes = minutes;
+    }
+
+    public void setDuration(Duration duration) {
+        if (duration == null) {
+            this.durationMinutes = NO_DURATION;
+        } else {
+            setDuration(Math.toIntExact(duration.toMinutes()));
+        }
+    }
+
+    public void setStartTime(LocalDateTime startTime) {
+        this.startMinute = toMinute(startTime);
+    }
+
+    public void setStartMinute(long startMinute) {
+        this.startMinute = startMinute;
+    }
+
+    public boolean isScheduled() {
+        return startMinute != NO_TIME && durationMinutes != NO_DURATION;
+    }
+
+    public long getStartMinute() {
+        return startMinute;
+    }
+
+    public int getDurationMinutes() {
+        return durationMinutes;
+    }
+
+    // only meaningful for a scheduled task
+    public long getEndMinute() {
+        return startMinute + durationMinutes;
     }
 
     @Override
@@ -76,13 +128,17 @@ public class Task {
 
     @Override
     public int hashCode() {
-        return Objects.hash(id);
+        return Integer.hashCode(id);
     }
 
     @Override
     public String toString() {
         return this.getId() + ",TASK," + this.getName() + "," + this.getStatus() +
-                "," + this.getDescription() + "," + this.getStartTime() + "," + this.duration.toMinutes();
+                "," + this.getDescription() + "," + this.getStartTime() + "," + durationField();
+    }
+
+    protected String durationField() {
+        return durationMinutes == NO_DURATION ? "null" : String.valueOf(durationMinutes);
     }
 
     public void setStatus(Status status) {
@@ -90,10 +146,18 @@ public class Task {
     }
 
     public LocalDateTime getEndTime() {
-        return startTime.plus(duration);
+        return isScheduled() ? toDateTime(getEndMinute()) : null;
     }
 
     public LocalDateTime getStartTime() {
-        return startTime;
+        return toDateTime(startMinute);
+    }
+
+    public static long toMinute(LocalDateTime time) {
+        return time == null ? NO_TIME : Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    public static LocalDateTime toDateTime(long minute) {
+        return minute == NO_TIME ? null : LocalDateTime.ofEpochSecond(minute * 60, 0, ZoneOffset.UTC);
     }
 }
\ No newline at end of file
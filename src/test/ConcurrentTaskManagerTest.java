@@ -0,0 +1,136 @@
+package test;
+
+import manager.Managers;
+import model.Epic;
+import model.Status;
+import model.SubTask;
+import model.Task;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConcurrentTaskManagerTest extends TaskManagerTest {
+
+    @BeforeEach
+    void useConcurrentManager() {
+        manager = Managers.getConcurrent();
+    }
+
+    @Test
+    void racingWritersCannotTakeTheSameSlot() throws Exception {
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger accepted = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        // every thread tries to book the same 20 overlapping slots
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < 20; i++) {
+                    try {
+                        manager.addTask(new Task("Task", "desc", Status.NEW,
+                                defaultTime.plusMinutes(i * 30L), Duration.ofMinutes(45)));
+                        accepted.incrementAndGet();
+                    } catch (IllegalArgumentException ignored) {
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(accepted.get(), manager.getPrioritizedTasks().size());
+        Task previous = null;
+        for (Task task : manager.getPrioritizedTasks()) {
+            if (previous != null) {
+                assertFalse(previous.getEndTime().isAfter(task.getStartTime()), "Задачи пересекаются");
+            }
+            previous = task;
+        }
+    }
+
+    @Test
+    void concurrentStatusChangesKeepEpicConsistent() throws Exception {
+        Epic epic = new Epic("Epic", "desc");
+        manager.addTask(epic);
+        List<SubTask> subtasks = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            SubTask subtask = new SubTask("Sub", "desc", Status.NEW, epic.getId());
+            manager.addTask(subtask);
+            subtasks.add(subtask);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (SubTask subtask : subtasks) {
+            futures.add(pool.submit(() -> manager.updateStatus(subtask.getId(), Status.DONE)));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(Status.DONE, epic.getStatus());
+    }
+
+    @Test
+    void concurrentViewsAreAllRecordedInPerThreadOrder() throws Exception {
+        int threads = 8;
+        int perThread = 500;
+        List<List<Task>> owned = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            List<Task> mine = new ArrayList<>();
+            for (int i = 0; i < perThread; i++) {
+                Task task = new Task("Task", "desc");
+                manager.addTask(task);
+                mine.add(task);
+            }
+            owned.add(mine);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (List<Task> mine : owned) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (Task task : mine) {
+                    manager.getTask(task.getId());
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        List<Task> history = manager.getHistory();
+        assertEquals(threads * perThread, history.size());
+        for (List<Task> mine : owned) {
+            assertEquals(mine, history.stream().filter(mine::contains).toList(), "Порядок просмотров потока нарушен");
+        }
+    }
+}
\ No newline at end of file
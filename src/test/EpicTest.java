@@ -12,9 +12,11 @@ import org.junit.jupiter.api.Test;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.HashMap;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class EpicTest {
@@ -25,8 +27,8 @@ public class EpicTest {
     @BeforeEach
     void beforeEach() {
         manager = Managers.getInMemory();
-        defaultTime = LocalDateTime.now();
-        defaultTime2 = LocalDateTime.now().plusDays(1);
+        defaultTime = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+        defaultTime2 = defaultTime.plusDays(1);
     }
 
     @Test
@@ -93,4 +95,75 @@ public class EpicTest {
         assertEquals(manualEpic.getStatus(), Status.IN_PROGRESS);
     }
 
+    @Test
+    void subtaskMovesBetweenEpicsOnUpdate() {
+        Epic first = new Epic("First", "desc");
+        Epic second = new Epic("Second", "desc");
+        manager.addTask(first);
+        manager.addTask(second);
+
+        SubTask subtask = new SubTask("Sub", "desc", Status.DONE, defaultTime, Duration.ofMinutes(10), first.getId());
+        manager.addTask(subtask);
+        manager.updateTask(subtask.getId(),
+                new SubTask("Sub", "desc", Status.DONE, defaultTime, Duration.ofMinutes(10), second.getId()));
+
+        assertTrue(first.subtasks.isEmpty());
+        assertEquals(Status.NEW, first.getStatus());
+        assertEquals(1, second.subtasks.size());
+        assertEquals(Status.DONE, second.getStatus());
+    }
+
+    @Test
+    void deletingEpicClearsItsSubtasksFromTimeline() {
+        Epic epic = new Epic("Epic", "desc");
+        manager.addTask(epic);
+        manager.addTask(new SubTask("Sub1", "desc", Status.NEW, defaultTime, Duration.ofMinutes(10), epic.getId()));
+        manager.addTask(new SubTask("Sub2", "desc", Status.NEW, defaultTime2, Duration.ofMinutes(10), epic.getId()));
+
+        manager.deleteByID(epic.getId());
+
+        assertTrue(manager.getAllTasks().isEmpty());
+        assertTrue(manager.getPrioritizedTasks().isEmpty());
+    }
+
+    @Test
+    void epicStatusFollowsSubtaskStatusChanges() {
+        Epic epic = new Epic("Epic", "desc");
+        manager.addTask(epic);
+        SubTask first = new SubTask("Sub1", "desc", Status.NEW, defaultTime, Duration.ofMinutes(10), epic.getId());
+        SubTask second = new SubTask("Sub2", "desc", Status.NEW, defaultTime2, Duration.ofMinutes(10), epic.getId());
+        manager.addTask(first);
+        manager.addTask(second);
+
+        manager.updateStatus(first.getId(), Status.DONE);
+        assertEquals(Status.IN_PROGRESS, epic.getStatus());
+
+        manager.updateStatus(second.getId(), Status.DONE);
+        assertEquals(Status.DONE, epic.getStatus());
+
+        manager.updateStatus(second.getId(), Status.NEW);
+        manager.deleteByID(first.getId());
+        assertEquals(Status.NEW, epic.getStatus());
+    }
+
+    @Test
+    void epicTimeWindowFollowsSubtasks() {
+        Epic epic = new Epic("Epic", "desc");
+        manager.addTask(epic);
+        SubTask first = new SubTask("Sub1", "desc", Status.NEW, defaultTime, Duration.ofMinutes(10), epic.getId());
+        SubTask last = new SubTask("Sub2", "desc", Status.NEW, defaultTime2, Duration.ofMinutes(30), epic.getId());
+        manager.addTask(first);
+        manager.addTask(last);
+
+        assertEquals(defaultTime, epic.getStartTime());
+        assertEquals(defaultTime2.plusMinutes(30), epic.getEndTime());
+
+        manager.deleteByID(last.getId());
+        assertEquals(defaultTime.plusMinutes(10), epic.getEndTime());
+
+        manager.deleteByID(first.getId());
+        assertNull(epic.getStartTime());
+        assertNull(epic.getEndTime());
+    }
+
 }
\ No newline at end of file
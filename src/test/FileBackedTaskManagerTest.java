@@ -1,5 +1,6 @@
 package test;
 
+import manager.EventBus;
 import manager.FileBackedTaskManager;
 import manager.Managers;
 import manager.TaskManager;
@@ -12,9 +13,19 @@ import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -50,6 +61,324 @@ public class FileBackedTaskManagerTest extends test.TaskManagerTest {
         assertEquals("Subtask1", tasks.get(subtask.getId()).getName());
     }
 
+    @Test
+    void batchIsSavedAndLoaded() throws IOException {
+        File tempFile = File.createTempFile("test", ".csv");
+        FileBackedTaskManager manager = new FileBackedTaskManager(tempFile);
+
+        Epic epic = new Epic("Epic1", "Epic desc");
+        epic.setId(5);
+        SubTask subtask = new SubTask("Subtask1", "Subdesc", Status.DONE, defaultTime, Duration.ofMinutes(10), 5);
+        Task task = new Task("Task1", "Desc1", Status.NEW, defaultTime2, Duration.ofMinutes(10));
+        manager.addAll(List.of(subtask, epic, task));
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+
+        assertEquals(3, loaded.getAllTasks().size());
+        assertEquals(Status.DONE, loaded.getAllEpics().get(5).getStatus());
+        // generated ids continue after the explicit one
+        assertTrue(subtask.getId() > 5);
+        assertTrue(task.getId() > 5);
+    }
+
+    @Test
+    void eventBusSavesOffTheWritePath() throws Exception {
+        File tempFile = File.createTempFile("test", ".csv");
+        try (EventBus events = new EventBus()) {
+            FileBackedTaskManager manager = new FileBackedTaskManager(tempFile, events);
+            Task task = new Task("Task1", "Desc1", Status.NEW, defaultTime, Duration.ofMinutes(10));
+            manager.addTask(task);
+            manager.getTask(task.getId());
+            manager.updateStatus(task.getId(), Status.DONE);
+
+            assertTrue(events.awaitDrained(5, TimeUnit.SECONDS));
+            assertEquals(List.of(task), manager.getHistory());
+            for (EventBus.Subscription subscription : events.getSubscriptions()) {
+                assertEquals(0, subscription.getLag());
+            }
+        }
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(1, loaded.getAllTasks().size());
+        assertEquals(Status.DONE, loaded.getAllTasks().values().iterator().next().getStatus());
+    }
+
+    @Test
+    void durableModesAreRefusedWithAnEventBus() throws IOException {
+        File tempFile = File.createTempFile("test", ".csv");
+        try (EventBus events = new EventBus()) {
+            FileBackedTaskManager manager = new FileBackedTaskManager(tempFile, events);
+            assertThrows(IllegalArgumentException.class, () -> manager.setDurability(FileBackedTaskManager.Durability.SYNC));
+            assertThrows(IllegalArgumentException.class, () -> manager.setDurability(FileBackedTaskManager.Durability.GROUP_COMMIT));
+            assertEquals(FileBackedTaskManager.Durability.ASYNC, manager.getDurability());
+            assertDoesNotThrow(() -> manager.setDurability(FileBackedTaskManager.Durability.WRITE_BEHIND));
+        }
+    }
+
+    @Test
+    void mutationsAreJournaledAndReplayedOnLoad() throws IOException {
+        File tempFile = File.createTempFile("test", ".csv");
+        File journal = new File(tempFile.getPath() + ".journal");
+        FileBackedTaskManager manager = FileBackedTaskManager.loadFromFile(tempFile);
+
+        Task task = new Task("Task1", "Desc1", Status.NEW, defaultTime, Duration.ofMinutes(10));
+        manager.addTask(task);
+        Epic epic = new Epic("Epic1", "Epic desc");
+        epic.setId(50);
+        SubTask subtask = new SubTask("Subtask1", "Subdesc", Status.NEW, defaultTime2, Duration.ofMinutes(10), 50);
+        manager.addAll(List.of(subtask, epic));
+        manager.updateStatus(subtask.getId(), Status.DONE);
+        manager.updateTask(task.getId(), new Task("Task1", "Moved", Status.IN_PROGRESS, defaultTime.plusHours(5), Duration.ofMinutes(10)));
+        Epic other = new Epic("Epic2", "Epic desc");
+        manager.addTask(other);
+        manager.addTask(new SubTask("Subtask2", "Subdesc", Status.NEW, other.getId()));
+        manager.deleteByID(other.getId());
+
+        // the snapshot is left alone, each change only appends to the journal
+        assertEquals(0, tempFile.length());
+        assertEquals(9, manager.getJournalRecords());
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(manager.getAllTasks().toString(), loaded.getAllTasks().toString());
+        assertEquals(Status.DONE, loaded.getAllEpics().get(50).getStatus());
+        assertEquals(defaultTime.plusHours(5), loaded.getAllTasks().get(task.getId()).getStartTime());
+    }
+
+    @Test
+    void checkpointFoldsTheJournalIntoTheSnapshot() throws IOException {
+        File tempFile = File.createTempFile("test", ".csv");
+        File journal = new File(tempFile.getPath() + ".journal");
+        FileBackedTaskManager manager = new FileBackedTaskManager(tempFile);
+        Task task = new Task("Task1", "Desc1", Status.NEW, defaultTime, Duration.ofMinutes(10));
+        manager.addTask(task);
+        manager.updateStatus(task.getId(), Status.DONE);
+
+        manager.checkpoint();
+        assertEquals(0, journal.length());
+        File csv = File.createTempFile("export", ".csv");
+        manager.exportCsv(csv);
+        assertEquals(List.of(task.toString()), Files.readAllLines(csv.toPath()));
+
+        manager.addTask(new Task("Task2", "Desc2", Status.NEW));
+        manager.close();
+        // a crash in the middle of a write leaves a torn record behind
+        appendTornRecord(journal);
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(manager.getAllTasks().toString(), loaded.getAllTasks().toString());
+    }
+
+    @Test
+    void writesAfterATornRecordSurviveTheNextLoad() throws IOException {
+        File tempFile = File.createTempFile("test", ".csv");
+        File journal = new File(tempFile.getPath() + ".journal");
+        FileBackedTaskManager manager = FileBackedTaskManager.loadFromFile(tempFile);
+        Task a = new Task("A", "Desc", Status.NEW);
+        manager.addTask(a);
+        manager.close();
+        appendTornRecord(journal);
+
+        FileBackedTaskManager recovered = FileBackedTaskManager.loadFromFile(tempFile);
+        recovered.addTask(new Task("B", "Desc", Status.NEW));
+        recovered.updateStatus(a.getId(), Status.DONE);
+        recovered.close();
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(recovered.getAllTasks().toString(), loaded.getAllTasks().toString());
+        assertEquals(2, loaded.getAllTasks().size(), "Записи после восстановления не должны теряться");
+        assertEquals(Status.DONE, loaded.getAllTasks().get(a.getId()).getStatus());
+    }
+
+    @Test
+    void textWithCommasAndLineBreaksSurvivesTheJournal() throws IOException {
+        File tempFile = File.createTempFile("test", ".csv");
+        FileBackedTaskManager manager = FileBackedTaskManager.loadFromFile(tempFile);
+        manager.addTask(new Task("Buy milk, eggs", "Desc", Status.NEW));
+        manager.addTask(new Task("second", "Desc", Status.NEW));
+        manager.addTask(new Task("third", "first line\nsecond line, with a comma", Status.NEW));
+        manager.addTask(new Task("fourth", null, Status.NEW));
+        manager.close();
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(4, loaded.getAllTasks().size());
+        assertEquals(manager.getAllTasks().toString(), loaded.getAllTasks().toString());
+        loaded.close();
+        FileBackedTaskManager reloaded = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(manager.getAllTasks().toString(), reloaded.getAllTasks().toString());
+    }
+
+    @Test
+    void damagedRecordInTheMiddleOfTheJournalFailsTheLoad() throws IOException {
+        File tempFile = File.createTempFile("test", ".csv");
+        File journal = new File(tempFile.getPath() + ".journal");
+        FileBackedTaskManager manager = FileBackedTaskManager.loadFromFile(tempFile);
+        manager.addTask(new Task("Task1", "Desc1", Status.NEW));
+        manager.addTask(new Task("Task2", "Desc2", Status.NEW));
+        manager.close();
+
+        // a byte of the first record's payload flips, and the second record is still whole
+        byte[] bytes = Files.readAllBytes(journal.toPath());
+        bytes[12] ^= 1;
+        Files.write(journal.toPath(), bytes);
+
+        assertThrows(IOException.class, () -> FileBackedTaskManager.loadFromFile(tempFile));
+        assertArrayEquals(bytes, Files.readAllBytes(journal.toPath()), "Повреждённый журнал не должен перезаписываться");
+        assertEquals(0, tempFile.length());
+    }
+
+    // the first half of a copy of the journal's first record, as a crash during its write would leave it
+    private static void appendTornRecord(File journal) throws IOException {
+        byte[] bytes = Files.readAllBytes(journal.toPath());
+        int length = ByteBuffer.wrap(bytes).getInt();
+        Files.write(journal.toPath(), Arrays.copyOf(bytes, 8 + length / 2), StandardOpenOption.APPEND);
+    }
+
+    @Test
+    void backgroundCheckpointsKeepTheJournalShort() throws Exception {
+        File tempFile = File.createTempFile("test", ".csv");
+        File journal = new File(tempFile.getPath() + ".journal");
+        FileBackedTaskManager manager = FileBackedTaskManager.loadFromFile(tempFile);
+        manager.startCheckpointing(1000, Duration.ofMillis(20));
+        Task task = new Task("Task1", "Desc1", Status.NEW, defaultTime, Duration.ofMinutes(10));
+        manager.addTask(task);
+        for (int i = 0; i < 500; i++) {
+            manager.updateStatus(task.getId(), i % 2 == 0 ? Status.DONE : Status.IN_PROGRESS);
+        }
+        // 500 records take about 25 KB; checkpoints start at every 1000 bytes, and the interval picks up
+        // whatever was written while the last of them ran
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (journal.length() >= 10_000 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        manager.close();
+
+        assertTrue(tempFile.length() > 0);
+        assertTrue(journal.length() < 10_000, "Журнал должен сжиматься в фоне");
+        assertFalse(new File(tempFile.getPath() + ".journal.1").exists());
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(Status.IN_PROGRESS, loaded.getAllTasks().get(task.getId()).getStatus());
+    }
+
+    @Test
+    void unfinishedCheckpointIsRecoveredOnLoad() throws IOException {
+        File tempFile = File.createTempFile("test", ".csv");
+        File journal = new File(tempFile.getPath() + ".journal");
+        FileBackedTaskManager manager = new FileBackedTaskManager(tempFile);
+        Task task = new Task("Task1", "Desc1", Status.NEW, defaultTime, Duration.ofMinutes(10));
+        manager.addTask(task);
+        manager.close();
+        // the journal was rolled twice, but both checkpoints died before their snapshots were written
+        File first = new File(tempFile.getPath() + ".journal.1");
+        File second = new File(tempFile.getPath() + ".journal.2");
+        Files.move(journal.toPath(), first.toPath());
+        FileBackedTaskManager interrupted = FileBackedTaskManager.loadFromFile(tempFile);
+        interrupted.updateStatus(task.getId(), Status.DONE);
+        interrupted.close();
+        Files.move(journal.toPath(), second.toPath());
+
+        FileBackedTaskManager reopened = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(Status.DONE, reopened.getAllTasks().get(task.getId()).getStatus(), "Сегменты должны применяться по порядку");
+        reopened.addTask(new Task("Task2", "Desc2", Status.NEW));
+        reopened.checkpoint();
+        reopened.close();
+
+        assertFalse(first.exists());
+        assertFalse(second.exists());
+        assertFalse(new File(tempFile.getPath() + ".journal.3").exists());
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(reopened.getAllTasks().toString(), loaded.getAllTasks().toString());
+    }
+
+    @Test
+    void groupCommitSharesForcesBetweenWriters() throws Exception {
+        File tempFile = File.createTempFile("test", ".csv");
+        FileBackedTaskManager manager = FileBackedTaskManager.loadFromFile(tempFile);
+        manager.setDurability(FileBackedTaskManager.Durability.GROUP_COMMIT, Duration.ofMillis(5), 16);
+        int threads = 8;
+        int perThread = 50;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    manager.addTask(new Task("Task", "Desc", Status.NEW));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertTrue(manager.getJournalForces() < threads * perThread, "Запись на диск должна группироваться");
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(threads * perThread, loaded.getAllTasks().size());
+
+        loaded.setDurability(FileBackedTaskManager.Durability.SYNC);
+        long before = loaded.getJournalForces();
+        loaded.addTask(new Task("Task", "Desc", Status.NEW));
+        loaded.addTask(new Task("Task", "Desc", Status.NEW));
+        assertEquals(before + 2, loaded.getJournalForces());
+    }
+
+    @Test
+    void writeBehindCoalescesBurstsIntoOneRecord() throws IOException {
+        File tempFile = File.createTempFile("test", ".csv");
+        File journal = new File(tempFile.getPath() + ".journal");
+        FileBackedTaskManager manager = FileBackedTaskManager.loadFromFile(tempFile);
+        Task a = new Task("A", "Desc", Status.NEW, defaultTime.plusHours(2), Duration.ofMinutes(30));
+        Task b = new Task("B", "Desc", Status.NEW, defaultTime.plusHours(1), Duration.ofMinutes(30));
+        manager.addTask(a);
+        manager.addTask(b);
+        manager.setDurability(FileBackedTaskManager.Durability.WRITE_BEHIND, Duration.ofHours(1), 1000);
+        long journaled = journal.length();
+        long records = manager.getJournalRecords();
+
+        for (int i = 0; i < 1000; i++) {
+            manager.updateStatus(a.getId(), i % 2 == 0 ? Status.DONE : Status.IN_PROGRESS);
+        }
+        // b leaves its slot, a takes it, and b moves once more: only the final states are journaled
+        manager.updateTask(b.getId(), new Task("B", "Desc", Status.NEW, defaultTime.plusHours(3), Duration.ofMinutes(30)));
+        manager.updateTask(a.getId(), new Task("A", "Desc", Status.DONE, defaultTime.plusHours(1), Duration.ofMinutes(30)));
+        manager.updateTask(b.getId(), new Task("B", "Desc", Status.NEW, defaultTime.plusHours(2), Duration.ofMinutes(30)));
+        assertEquals(journaled, journal.length(), "Изменения не должны писаться на диск сразу");
+
+        manager.close();
+        assertEquals(4, manager.getJournalRecords());
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(manager.getAllTasks().toString(), loaded.getAllTasks().toString());
+    }
+
+    @Test
+    void binarySnapshotRoundTripsAndCsvStaysImportable() throws IOException {
+        File csv = File.createTempFile("import", ".csv");
+        Files.write(csv.toPath(), List.of(
+                "3,EPIC,Epic,NEW,Desc,",
+                "4,SUBTASK,Sub,DONE,Desc,3," + defaultTime + ",15",
+                "7,TASK,Task,IN_PROGRESS,Desc,null,null"));
+        FileBackedTaskManager imported = FileBackedTaskManager.loadFromFile(csv);
+        assertEquals(3, imported.getAllTasks().size());
+        assertEquals(Status.DONE, imported.getAllEpics().get(3).getStatus());
+
+        imported.checkpoint();
+        imported.close();
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(csv);
+        assertEquals(imported.getAllTasks().toString(), loaded.getAllTasks().toString());
+        assertEquals(defaultTime.plusMinutes(15), loaded.getAllTasks().get(4).getEndTime());
+        assertEquals(List.of(loaded.getAllTasks().get(4)), List.copyOf(loaded.getPrioritizedTasks()));
+
+        File exported = File.createTempFile("export", ".csv");
+        loaded.exportCsv(exported);
+        assertEquals(loaded.getAllTasks().toString(), FileBackedTaskManager.loadFromFile(exported).getAllTasks().toString());
+
+        // a flipped byte is caught by the checksum instead of loading garbage
+        byte[] bytes = Files.readAllBytes(csv.toPath());
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(csv.toPath(), bytes);
+        assertThrows(IOException.class, () -> FileBackedTaskManager.loadFromFile(csv));
+    }
+
     @Test
     void saveAndLoadEmptyManager() throws IOException {
 
@@ -1,5 +1,6 @@
 package test;
 
+import manager.InMemoryHistoryManager;
 import manager.Managers;
 import manager.TaskManager;
 import model.Status;
@@ -8,9 +9,18 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 
+import java.lang.management.ManagementFactory;
+import java.time.Clock;
 import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -81,5 +91,133 @@ class HistoryManagerTest extends TaskManagerTest {
 
     }
 
+    @Test
+    void boundedHistoryEvictsOldestAndKeepsIndexFlat() {
+        InMemoryHistoryManager history = new InMemoryHistoryManager(3);
+        for (int id = 1; id <= 100_000; id++) {
+            history.add(taskWithId(id));
+        }
+        assertEquals(3, history.size());
+        assertEquals(List.of(99_998, 99_999, 100_000), history.getHistory().stream().map(Task::getId).toList());
+
+        // viewing again moves a task to the tail, so the next eviction takes the one after it
+        history.add(taskWithId(99_998));
+        history.add(taskWithId(7));
+        assertEquals(List.of(100_000, 99_998, 7), history.getHistory().stream().map(Task::getId).toList());
+
+        history.remove(99_998);
+        history.remove(12345);
+        assertEquals(2, history.size());
+    }
+
+    @Test
+    void expiredEntriesLeaveTheHistory() {
+        AtomicLong millis = new AtomicLong();
+        Clock clock = new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return Instant.ofEpochMilli(millis.get());
+            }
+        };
+        InMemoryHistoryManager history = new InMemoryHistoryManager(10, Duration.ofMinutes(5), clock);
+        history.add(taskWithId(1));
+        millis.addAndGet(Duration.ofMinutes(3).toMillis());
+        history.add(taskWithId(2));
+        millis.addAndGet(Duration.ofMinutes(3).toMillis());
+
+        assertEquals(List.of(2), history.getHistory().stream().map(Task::getId).toList());
+        assertEquals(1, history.size());
+        millis.addAndGet(Duration.ofMinutes(3).toMillis());
+        assertTrue(history.getHistory().isEmpty());
+        assertEquals(0, history.size());
+    }
+
+    @Test
+    void historySnapshotIsReusedUntilTheHistoryChanges() {
+        InMemoryHistoryManager history = new InMemoryHistoryManager();
+        for (int id = 1; id <= 5; id++) {
+            history.add(taskWithId(id));
+        }
+        List<Task> first = history.getHistory();
+        assertSame(first, history.getHistory());
+        assertThrows(UnsupportedOperationException.class, () -> first.remove(0));
+        assertTrue(history.contains(3));
+        assertFalse(history.contains(6));
+        assertEquals(List.of(2, 3), history.getHistory(1, 2).stream().map(Task::getId).toList());
+        assertEquals(List.of(5), history.getHistory(4, 10).stream().map(Task::getId).toList());
+        assertTrue(history.getHistory(10, 2).isEmpty());
+
+        history.remove(3);
+        List<Task> second = history.getHistory();
+        assertNotSame(first, second);
+        assertEquals(5, first.size(), "Выданный снимок не должен меняться");
+        assertEquals(List.of(1, 2, 4, 5), second.stream().map(Task::getId).toList());
+        assertFalse(history.contains(3));
+    }
+
+    @Test
+    void historyMatchesReferenceUnderRandomOperations() {
+        InMemoryHistoryManager history = new InMemoryHistoryManager(50);
+        LinkedHashMap<Integer, Task> expected = new LinkedHashMap<>();
+        Random random = new Random(42);
+        for (int step = 0; step < 20_000; step++) {
+            int id = random.nextInt(200);
+            if (random.nextInt(4) == 0) {
+                history.remove(id);
+                expected.remove(id);
+            } else {
+                Task task = taskWithId(id);
+                history.add(task);
+                if (expected.remove(id) == null && expected.size() == 50) {
+                    expected.remove(expected.keySet().iterator().next());
+                }
+                expected.put(id, task);
+            }
+        }
+        assertEquals(new ArrayList<>(expected.values()), history.getHistory());
+        for (int id = 0; id < 200; id++) {
+            assertEquals(expected.containsKey(id), history.contains(id));
+        }
+    }
+
+    @Test
+    void viewsAllocateNothingOnceTheHistoryIsWarm() {
+        InMemoryHistoryManager history = new InMemoryHistoryManager(1000);
+        Task[] tasks = new Task[2000];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = taskWithId(i);
+        }
+        for (Task task : tasks) {
+            history.add(task);
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 100_000; i++) {
+            Task task = tasks[(i * 7) % tasks.length];
+            history.add(task);
+            if (i % 3 == 0) {
+                history.remove(task.getId());
+            }
+        }
+        // one node or boxed key per view would take megabytes
+        assertTrue(threads.getCurrentThreadAllocatedBytes() - before < 100_000);
+    }
+
+    private static Task taskWithId(int id) {
+        Task task = new Task("Task" + id, "Description");
+        task.setId(id);
+        return task;
+    }
 
 }
\ No newline at end of file
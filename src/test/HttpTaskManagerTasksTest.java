@@ -6,6 +6,7 @@ import manager.InMemoryTaskManager;
 import manager.TaskManager;
 import model.Epic;
 import model.Status;
+import model.SubTask;
 import model.Task;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
@@ -18,11 +19,13 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.HashMap;
+import java.util.Map;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class HttpTaskManagerTasksTest {
 
@@ -46,6 +49,122 @@ public class HttpTaskManagerTasksTest {
         taskServer.stop();
     }
 
+    @Test
+    public void testTaskJsonCarriesSchedule() {
+        Task task = new Task("Test 1", "Testing task 1",
+                Status.NEW, LocalDateTime.of(2025, 3, 1, 9, 30), Duration.ofMinutes(5));
+        String taskJson = gson.toJson(task);
+
+        assertTrue(taskJson.contains("\"startTime\":\"2025-03-01T09:30\""), taskJson);
+        assertTrue(taskJson.contains("\"duration\":\"PT5M\""), taskJson);
+
+        Task parsed = gson.fromJson(taskJson, Task.class);
+        assertEquals(task.getStartTime(), parsed.getStartTime());
+        assertEquals(task.getDuration(), parsed.getDuration());
+
+        Task unscheduled = gson.fromJson("{\"name\":\"Test 2\",\"status\":\"NEW\"}", Task.class);
+        assertFalse(unscheduled.isScheduled());
+    }
+
+    @Test
+    public void testQueryTasksByPage() throws IOException, InterruptedException {
+        manager.addTask(new Task("Test 1", "Testing task 1", Status.NEW, LocalDateTime.now(), Duration.ofMinutes(5)));
+        manager.addTask(new Task("Test 2", "Testing task 2", Status.DONE, LocalDateTime.now().plusHours(1), Duration.ofMinutes(5)));
+        manager.addTask(new Task("Test 3", "Testing task 3", Status.NEW, LocalDateTime.now().plusHours(2), Duration.ofMinutes(5)));
+
+        HttpClient client = HttpClient.newHttpClient();
+        URI url = URI.create("http://localhost:8080/tasks?status=new&limit=1");
+        HttpRequest request = HttpRequest.newBuilder().uri(url).GET().build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().contains("\"Test 1\""), response.body());
+        assertTrue(response.body().contains("\"nextCursor\""), response.body());
+
+        URI bad = URI.create("http://localhost:8080/tasks?limit=0");
+        response = client.send(HttpRequest.newBuilder().uri(bad).GET().build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(400, response.statusCode());
+    }
+
+    @Test
+    public void testScheduleTaskInFreeSlot() throws IOException, InterruptedException {
+        LocalDateTime start = LocalDateTime.of(2025, 3, 1, 9, 0);
+        manager.addTask(new Task("Test 1", "Testing task 1", Status.NEW, start, Duration.ofMinutes(60)));
+        manager.addTask(new Task("Test 2", "Testing task 2", Status.NEW, start.plusMinutes(90), Duration.ofMinutes(60)));
+
+        HttpClient client = HttpClient.newHttpClient();
+        URI url = URI.create("http://localhost:8080/schedule?duration=45&from=2025-03-01T09:00");
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder().uri(url).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        assertEquals("\"2025-03-01T11:30\"", response.body());
+
+        Task task = new Task("Test 3", "Testing task 3", Status.NEW);
+        task.setDuration(Duration.ofMinutes(30));
+        url = URI.create("http://localhost:8080/schedule?from=2025-03-01T09:00");
+        response = client.send(HttpRequest.newBuilder().uri(url).POST(HttpRequest.BodyPublishers.ofString(gson.toJson(task))).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(201, response.statusCode());
+        assertEquals(start.plusMinutes(60), gson.fromJson(response.body(), Task.class).getStartTime());
+    }
+
+    @Test
+    public void testInvalidTaskIsNotTakenForOverlap() throws IOException, InterruptedException {
+        LocalDateTime start = LocalDateTime.of(2025, 3, 1, 9, 0);
+        manager.addTask(new Task("Test 1", "Testing task 1", Status.NEW, start, Duration.ofMinutes(60)));
+
+        HttpClient client = HttpClient.newHttpClient();
+        URI url = URI.create("http://localhost:8080/tasks");
+        String negative = "{\"name\":\"Test 2\",\"status\":\"NEW\",\"startTime\":\"2025-03-01T12:00\",\"duration\":\"-30\"}";
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder().uri(url).POST(HttpRequest.BodyPublishers.ofString(negative)).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(400, response.statusCode());
+
+        Task overlapping = new Task("Test 3", "Testing task 3", Status.NEW, start.plusMinutes(30), Duration.ofMinutes(60));
+        response = client.send(HttpRequest.newBuilder().uri(url).POST(HttpRequest.BodyPublishers.ofString(gson.toJson(overlapping))).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(406, response.statusCode());
+        assertEquals(1, manager.getPrioritizedTasks().size());
+    }
+
+    @Test
+    public void testScheduleSubtaskOfMissingEpic() throws IOException, InterruptedException {
+        SubTask subtask = new SubTask("Sub", "desc", Status.NEW, 1000);
+        subtask.setDuration(Duration.ofMinutes(30));
+
+        HttpClient client = HttpClient.newHttpClient();
+        URI url = URI.create("http://localhost:8080/schedule?from=2025-03-01T09:00");
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder().uri(url).POST(HttpRequest.BodyPublishers.ofString(gson.toJson(subtask))).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(404, response.statusCode());
+        assertTrue(manager.getPrioritizedTasks().isEmpty(), "Подзадача без эпика не должна добавляться");
+    }
+
+    @Test
+    public void testUpdateAnswersFromResult() throws IOException, InterruptedException {
+        Task task = new Task("Test 1", "Testing task 1", Status.NEW, LocalDateTime.now(), Duration.ofMinutes(5));
+        manager.addTask(task);
+        manager.addTask(new Task("Test 2", "Testing task 2", Status.NEW, LocalDateTime.now().plusHours(1), Duration.ofMinutes(5)));
+
+        HttpClient client = HttpClient.newHttpClient();
+        Task moved = new Task("Test 1", "Testing task 1", Status.DONE, LocalDateTime.now().plusHours(1), Duration.ofMinutes(5));
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create("http://localhost:8080/tasks/" + task.getId()))
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(moved))).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(406, response.statusCode());
+
+        response = client.send(HttpRequest.newBuilder(URI.create("http://localhost:8080/tasks/1000"))
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(moved))).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(404, response.statusCode());
+
+        moved.setStartTime(LocalDateTime.now().plusHours(2));
+        response = client.send(HttpRequest.newBuilder(URI.create("http://localhost:8080/tasks/" + task.getId()))
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(moved))).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        assertEquals(Status.DONE, manager.peek(task.getId()).getStatus());
+        // a mutation is not a view
+        assertTrue(manager.getHistory().isEmpty());
+    }
+
     @Test
     public void testAddTask() throws IOException, InterruptedException {
         // создаём задачу
@@ -65,7 +184,7 @@ public class HttpTaskManagerTasksTest {
         assertEquals(201, response.statusCode());
 
         // проверяем, что создалась одна задача с корректным именем
-        HashMap<Integer, Task> tasksFromManager = manager.getAllTasks();
+        Map<Integer, Task> tasksFromManager = manager.getAllTasks();
 
         assertNotNull(tasksFromManager, "Задачи не возвращаются");
         assertEquals(1, tasksFromManager.size(), "Некорректное количество задач");
@@ -90,7 +209,7 @@ public class HttpTaskManagerTasksTest {
         assertEquals(201, response.statusCode());
 
         // проверяем, что создалась одна задача с корректным именем
-        HashMap<Integer, Task> tasksFromManager = manager.getAllTasks();
+        Map<Integer, Task> tasksFromManager = manager.getAllTasks();
 
         assertNotNull(tasksFromManager, "Задачи не возвращаются");
         assertEquals(1, tasksFromManager.size(), "Некорректное количество задач");
@@ -1,14 +1,33 @@
 package test;
 
+import manager.BatchResult;
+import manager.Diagnostics;
+import manager.EventBus;
+import manager.TaskEvent;
+import manager.TaskPage;
+import manager.TaskQuery;
 import model.Epic;
 import model.Status;
 import model.SubTask;
+import model.Task;
 import org.junit.jupiter.api.Test;
 
+import java.lang.management.ManagementFactory;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class InMemoryTaskManagerTest extends TaskManagerTest {
@@ -25,4 +44,199 @@ public class InMemoryTaskManagerTest extends TaskManagerTest {
 
         assertEquals(manualTask.getId(), manualSubtask.getEpicId());
     }
+
+    @Test
+    void sparseAndNegativeExplicitIds() {
+        Task huge = new Task("Huge", "desc", Status.NEW);
+        huge.setId(Integer.MAX_VALUE - 1);
+        Task negative = new Task("Negative", "desc", Status.NEW);
+        negative.setId(-5);
+        Task fine = new Task("Fine", "desc", Status.NEW);
+        fine.setId(3);
+
+        List<BatchResult> results = manager.addAll(List.of(negative, fine));
+        assertFalse(results.get(0).isSuccess());
+        assertTrue(results.get(1).isSuccess());
+        assertThrows(IllegalArgumentException.class, () -> manager.addTask(negative));
+        // the counter was not pushed by the rejected id
+        Task next = new Task("Next", "desc", Status.NEW);
+        manager.addTask(next);
+        assertEquals(4, next.getId());
+
+        // a stray large id costs one page of the store, and id order still holds across the gap
+        manager.addTask(huge);
+        assertEquals(List.of(3, 4, Integer.MAX_VALUE - 1), List.copyOf(manager.getAllTasks().keySet()));
+        TaskPage page = manager.query(TaskQuery.all().descending().limit(2));
+        assertEquals(List.of(huge, next), page.getTasks());
+        manager.deleteByID(huge.getId());
+        assertEquals(2, manager.getAllTasks().size());
+    }
+
+    @Test
+    void adjacentTasksDoNotOverlap() {
+        manager.addTask(new Task("First", "desc", Status.NEW, defaultTime, Duration.ofMinutes(10)));
+        manager.addTask(new Task("Third", "desc", Status.NEW, defaultTime.plusMinutes(20), Duration.ofMinutes(10)));
+
+        assertDoesNotThrow(() -> manager.addTask(
+                new Task("Second", "desc", Status.NEW, defaultTime.plusMinutes(10), Duration.ofMinutes(10))));
+        assertThrows(IllegalArgumentException.class, () -> manager.addTask(
+                new Task("Long", "desc", Status.NEW, defaultTime.minusMinutes(5), Duration.ofHours(1))));
+        assertEquals(3, manager.getPrioritizedTasks().size());
+    }
+
+    @Test
+    void updateIgnoresOwnTimeSlot() {
+        Task task = new Task("Task", "desc", Status.NEW, defaultTime, Duration.ofMinutes(30));
+        Task other = new Task("Other", "desc", Status.NEW, defaultTime.plusHours(1), Duration.ofMinutes(30));
+        manager.addTask(task);
+        manager.addTask(other);
+
+        manager.updateTask(task.getId(), new Task("Task", "desc", Status.NEW, defaultTime.plusMinutes(10), Duration.ofMinutes(30)));
+        assertEquals(defaultTime.plusMinutes(10), manager.getTask(task.getId()).getStartTime());
+
+        assertThrows(IllegalArgumentException.class, () -> manager.updateTask(task.getId(),
+                new Task("Task", "desc", Status.NEW, defaultTime.plusMinutes(50), Duration.ofMinutes(30))));
+        assertEquals(2, manager.getPrioritizedTasks().size());
+    }
+
+    @Test
+    void typeViewsFollowMutations() {
+        Epic epic = new Epic("Epic", "desc");
+        manager.addTask(epic);
+        manager.addTask(new Task("Task", "desc", Status.NEW, defaultTime, Duration.ofMinutes(10)));
+        SubTask subtask = new SubTask("Sub", "desc", Status.NEW, defaultTime2, Duration.ofMinutes(10), epic.getId());
+        manager.addTask(subtask);
+
+        assertEquals(1, manager.getAllEpics().size());
+        assertEquals(1, manager.getSubTasks().size());
+        assertThrows(UnsupportedOperationException.class, () -> manager.getAllEpics().clear());
+
+        manager.deleteByID(epic.getId());
+
+        assertTrue(manager.getAllEpics().isEmpty());
+        assertTrue(manager.getSubTasks().isEmpty());
+    }
+
+    @Test
+    void rejectedBatchUpdateKeepsOldSlots() {
+        Task early = new Task("Early", "desc", Status.NEW, defaultTime, Duration.ofMinutes(60));
+        Task a = new Task("A", "desc", Status.NEW, defaultTime.plusHours(2), Duration.ofMinutes(30));
+        Task b = new Task("B", "desc", Status.NEW, defaultTime.plusHours(3), Duration.ofMinutes(30));
+        manager.addAll(List.of(early, a, b));
+
+        // a moves into the slot b leaves, but b cannot move, so a has to stay where it was too
+        Map<Integer, Task> updates = new LinkedHashMap<>();
+        updates.put(a.getId(), new Task("A", "desc", Status.NEW, defaultTime.plusHours(3), Duration.ofMinutes(30)));
+        updates.put(b.getId(), new Task("B", "desc", Status.NEW, defaultTime.plusMinutes(30), Duration.ofMinutes(10)));
+        List<BatchResult> results = manager.updateAll(updates);
+
+        assertFalse(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertEquals(List.of(early, a, b), List.copyOf(manager.getPrioritizedTasks()));
+        assertEquals(defaultTime.plusHours(2), manager.getTask(a.getId()).getStartTime());
+    }
+
+    @Test
+    void fullRingsDropOrCoalesceWithoutBlockingThePublisher() throws Exception {
+        CountDownLatch taken = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        List<TaskEvent> delivered = new CopyOnWriteArrayList<>();
+        Consumer<List<TaskEvent>> stalling = batch -> {
+            taken.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        try (EventBus events = new EventBus()) {
+            EventBus.Subscription dropping = events.subscribe("drop", 1, EventBus.Backpressure.DROP, stalling);
+            EventBus.Subscription coalescing = events.subscribe("coalesce", 1, EventBus.Backpressure.COALESCE,
+                    stalling.andThen(delivered::addAll));
+            Task task = new Task("Task", "desc", Status.NEW);
+            task.setId(1);
+            // both consumers take the first event and stall on it, then the second one fills their rings
+            events.publish(new TaskEvent(TaskEvent.Type.ADDED, task));
+            assertTrue(taken.await(5, TimeUnit.SECONDS));
+            events.publish(new TaskEvent(TaskEvent.Type.UPDATED, task));
+            task.setStatus(Status.DONE);
+            events.publish(new TaskEvent(TaskEvent.Type.STATUS_CHANGED, task));
+
+            assertEquals(1, dropping.getDropped());
+            assertEquals(1, coalescing.getCoalesced());
+            assertEquals(2, coalescing.getLag());
+            release.countDown();
+            assertTrue(events.awaitDrained(5, TimeUnit.SECONDS));
+            assertEquals(0, coalescing.getLag());
+            assertEquals(2, coalescing.getMaxLag());
+        }
+        assertEquals(2, delivered.size());
+        assertEquals(TaskEvent.Type.STATUS_CHANGED, delivered.get(1).getType());
+        assertEquals(Status.DONE, delivered.get(1).getStatus());
+    }
+
+    @Test
+    void coalescedEventsKeepTheOrderTheyWerePublishedIn() throws Exception {
+        CountDownLatch taken = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> delivered = new CopyOnWriteArrayList<>();
+        try (EventBus events = new EventBus()) {
+            EventBus.Subscription coalescing = events.subscribe("coalesce", 3, EventBus.Backpressure.COALESCE, batch -> {
+                taken.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                for (TaskEvent event : batch) {
+                    delivered.add(event.getType() + " " + event.getTaskId());
+                }
+            });
+            Task a = new Task("A", "desc", Status.NEW);
+            a.setId(1);
+            Task b = new Task("B", "desc", Status.NEW);
+            b.setId(2);
+            events.publish(new TaskEvent(TaskEvent.Type.ADDED, b));
+            assertTrue(taken.await(5, TimeUnit.SECONDS));
+            events.publish(new TaskEvent(TaskEvent.Type.UPDATED, a));
+            events.publish(new TaskEvent(TaskEvent.Type.VIEWED, a));
+            events.publish(new TaskEvent(TaskEvent.Type.VIEWED, b));
+            // the ring is full: a is viewed again, then deleted
+            events.publish(new TaskEvent(TaskEvent.Type.VIEWED, a));
+            events.publish(new TaskEvent(TaskEvent.Type.DELETED, a));
+
+            assertEquals(2, coalescing.getCoalesced());
+            release.countDown();
+            assertTrue(events.awaitDrained(5, TimeUnit.SECONDS));
+        }
+        // a history fed from this would end with b, a, and then drop a
+        assertEquals(List.of("ADDED 2", "VIEWED 2", "VIEWED 1", "DELETED 1"), delivered);
+    }
+
+    @Test
+    void disabledDiagnosticsBuildNoMessages() {
+        List<String> written = new ArrayList<>();
+        Diagnostics.Level level = Diagnostics.getLevel();
+        Diagnostics.Sink sink = Diagnostics.getSink();
+        Diagnostics.setSink((lvl, message) -> written.add(lvl + " " + message));
+        Diagnostics.setLevel(Diagnostics.Level.WARN);
+        try {
+            Task task = new Task("Task", "desc", Status.NEW);
+            manager.addTask(task);
+            manager.updateStatus(task.getId(), Status.DONE);
+            manager.updateStatus(task.getId() + 1, Status.DONE);
+            assertEquals(List.of("WARN Task with ID " + (task.getId() + 1) + " not found."), written);
+
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long before = threads.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < 100_000; i++) {
+                Diagnostics.debug("Task ID ", i, " status successfully updated.");
+            }
+            // building even one of these strings per call would take megabytes
+            assertTrue(threads.getCurrentThreadAllocatedBytes() - before < 100_000);
+        } finally {
+            Diagnostics.setLevel(level);
+            Diagnostics.setSink(sink);
+        }
+    }
 }
\ No newline at end of file
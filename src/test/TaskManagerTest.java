@@ -1,17 +1,34 @@
 package test;
 
+import manager.BatchResult;
 import manager.Managers;
+import manager.OperationResult;
 import manager.TaskManager;
+import manager.TaskPage;
+import manager.TaskQuery;
+import manager.TaskType;
+import manager.TaskSnapshot;
+import model.Epic;
 import model.Status;
+import model.SubTask;
 import model.Task;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 abstract class TaskManagerTest<T extends TaskManager> {
 
@@ -21,8 +38,8 @@ abstract class TaskManagerTest<T extends TaskManager> {
     @BeforeEach
     void beforeEach() {
         manager = Managers.getInMemory();
-        defaultTime = LocalDateTime.now();
-        defaultTime2 = LocalDateTime.now().plusDays(1);
+        defaultTime = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+        defaultTime2 = defaultTime.plusDays(1);
     }
     @Test
     void shouldAddTaskCorrectly() {
@@ -45,5 +62,264 @@ abstract class TaskManagerTest<T extends TaskManager> {
 
     }
 
+    @Test
+    void addAllReportsEveryItem() {
+        Task first = new Task("Task1", "desc", Status.NEW, defaultTime, Duration.ofMinutes(30));
+        Task overlapping = new Task("Task2", "desc", Status.NEW, defaultTime.plusMinutes(15), Duration.ofMinutes(30));
+        SubTask orphan = new SubTask("Sub", "desc", Status.NEW, defaultTime2, Duration.ofMinutes(10), 999);
+        Task later = new Task("Task3", "desc", Status.NEW, defaultTime.plusHours(1), Duration.ofMinutes(30));
+
+        List<BatchResult> results = manager.addAll(List.of(first, overlapping, orphan, later));
+
+        assertEquals(4, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertFalse(results.get(2).isSuccess());
+        assertTrue(results.get(3).isSuccess());
+        assertEquals(2, manager.getAllTasks().size());
+        assertEquals(later, manager.getTask(results.get(3).getId()));
+    }
+
+    @Test
+    void addAllRejectsIdsThatAreTaken() {
+        Task existing = new Task("Existing", "desc", Status.NEW, defaultTime, Duration.ofMinutes(30));
+        manager.addTask(existing);
+        Task replacement = new Task("Replacement", "desc", Status.NEW);
+        replacement.setId(existing.getId());
+        // the epic is turned away, so the subtask that relies on it has no epic either
+        Epic epic = new Epic("Epic", "desc");
+        epic.setId(existing.getId());
+        SubTask subtask = new SubTask("Sub", "desc", Status.NEW, existing.getId());
+        Task first = new Task("First", "desc", Status.NEW);
+        first.setId(40);
+        Task second = new Task("Second", "desc", Status.NEW);
+        second.setId(40);
+
+        List<BatchResult> results = manager.addAll(List.of(replacement, epic, subtask, first, second));
+
+        assertFalse(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertFalse(results.get(2).isSuccess());
+        assertTrue(results.get(3).isSuccess());
+        assertFalse(results.get(4).isSuccess());
+        assertEquals(2, manager.getAllTasks().size());
+        assertEquals("Existing", manager.getTask(existing.getId()).getName());
+        assertEquals("First", manager.getTask(40).getName());
+        assertEquals(List.of(existing), List.copyOf(manager.getPrioritizedTasks()));
+    }
+
+    @Test
+    void batchStatusChangesRecalculateEpic() {
+        Epic epic = new Epic("Epic", "desc");
+        manager.addTask(epic);
+        SubTask sub1 = new SubTask("Sub1", "desc", Status.NEW, defaultTime, Duration.ofMinutes(10), epic.getId());
+        SubTask sub2 = new SubTask("Sub2", "desc", Status.NEW, defaultTime2, Duration.ofMinutes(10), epic.getId());
+        manager.addAll(List.of(sub1, sub2));
+
+        Map<Integer, Status> statuses = new LinkedHashMap<>();
+        statuses.put(sub1.getId(), Status.DONE);
+        statuses.put(sub2.getId(), Status.DONE);
+        statuses.put(epic.getId(), Status.NEW);
+        List<BatchResult> results = manager.updateStatuses(statuses);
+
+        assertTrue(results.get(0).isSuccess());
+        assertTrue(results.get(1).isSuccess());
+        assertFalse(results.get(2).isSuccess());
+        assertEquals(Status.DONE, manager.getAllEpics().get(epic.getId()).getStatus());
+    }
+
+    @Test
+    void queryPagesThroughMatchingTasks() {
+        List<Task> added = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            Status status = i % 2 == 0 ? Status.NEW : Status.DONE;
+            added.add(new Task("Task" + i, "desc", status, defaultTime.plusHours(7 - i), Duration.ofMinutes(10)));
+        }
+        manager.addAll(added);
+        Epic epic = new Epic("Epic", "desc");
+        manager.addTask(epic);
+
+        List<Integer> ids = new ArrayList<>();
+        TaskPage page = manager.query(TaskQuery.all().type(TaskType.TASK).status(Status.NEW).limit(3));
+        page.getTasks().forEach(task -> ids.add(task.getId()));
+        page = manager.query(TaskQuery.all().type(TaskType.TASK).status(Status.NEW).limit(3).after(page.getNextCursor()));
+        page.getTasks().forEach(task -> ids.add(task.getId()));
+
+        assertNull(page.getNextCursor());
+        assertEquals(List.of(added.get(0).getId(), added.get(2).getId(), added.get(4).getId(), added.get(6).getId()), ids);
+    }
+
+    @Test
+    void queryByStartTimeHonoursRangeAndDirection() {
+        Task first = new Task("Task1", "desc", Status.NEW, defaultTime, Duration.ofMinutes(10));
+        Task second = new Task("Task2", "desc", Status.NEW, defaultTime.plusHours(1), Duration.ofMinutes(10));
+        Task third = new Task("Task3", "desc", Status.NEW, defaultTime.plusHours(2), Duration.ofMinutes(10));
+        Task unscheduled = new Task("Task4", "desc", Status.NEW);
+        unscheduled.setDuration(10);
+        manager.addAll(List.of(third, unscheduled, first, second));
+
+        TaskQuery query = TaskQuery.all().orderBy(TaskQuery.Order.START_TIME).descending()
+                .startingBetween(defaultTime, defaultTime.plusHours(2)).limit(1);
+        TaskPage page = manager.query(query);
+        assertEquals(List.of(second), page.getTasks());
+
+        page = manager.query(query.after(page.getNextCursor()));
+        assertEquals(List.of(first), page.getTasks());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void epicQueryPagesThroughItsOwnSubtasks() {
+        Epic epic = new Epic("Epic", "desc");
+        Epic other = new Epic("Other", "desc");
+        manager.addTask(epic);
+        manager.addTask(other);
+        SubTask late = new SubTask("Late", "desc", Status.NEW, defaultTime.plusHours(3), Duration.ofMinutes(10), epic.getId());
+        SubTask early = new SubTask("Early", "desc", Status.NEW, defaultTime.plusHours(1), Duration.ofMinutes(10), epic.getId());
+        SubTask unscheduled = new SubTask("Unscheduled", "desc", Status.NEW, epic.getId());
+        SubTask elsewhere = new SubTask("Elsewhere", "desc", Status.NEW, defaultTime.plusHours(2), Duration.ofMinutes(10), other.getId());
+        SubTask moving = new SubTask("Moving", "desc", Status.NEW, defaultTime, Duration.ofMinutes(10), epic.getId());
+        manager.addAll(List.of(late, early, unscheduled, elsewhere, moving));
+        // the moved subtask belongs to the other epic from now on, at a new time
+        SubTask moved = new SubTask("Moving", "desc", Status.NEW, defaultTime.plusHours(4), Duration.ofMinutes(10), other.getId());
+        manager.updateTask(moving.getId(), moved);
+
+        TaskQuery byId = TaskQuery.all().epic(epic.getId()).limit(2);
+        TaskPage page = manager.query(byId);
+        assertEquals(List.of(late.getId(), early.getId()), page.getTasks().stream().map(Task::getId).toList());
+        page = manager.query(byId.after(page.getNextCursor()));
+        assertEquals(List.of(unscheduled.getId()), page.getTasks().stream().map(Task::getId).toList());
+        assertNull(page.getNextCursor());
+
+        TaskQuery byStart = TaskQuery.all().epic(other.getId()).orderBy(TaskQuery.Order.START_TIME).descending().limit(1);
+        page = manager.query(byStart);
+        assertEquals(List.of(moved.getId()), page.getTasks().stream().map(Task::getId).toList());
+        page = manager.query(byStart.after(page.getNextCursor()));
+        assertEquals(List.of(elsewhere.getId()), page.getTasks().stream().map(Task::getId).toList());
+        assertNull(page.getNextCursor());
+
+        manager.deleteByID(epic.getId());
+        assertTrue(manager.query(TaskQuery.all().epic(epic.getId())).getTasks().isEmpty());
+    }
+
+    @Test
+    void tasksBetweenIncludeTaskRunningIntoWindow() {
+        Task before = new Task("Before", "desc", Status.NEW, defaultTime, Duration.ofMinutes(30));
+        Task running = new Task("Running", "desc", Status.NEW, defaultTime.plusHours(1), Duration.ofMinutes(90));
+        Task inside = new Task("Inside", "desc", Status.NEW, defaultTime.plusHours(3), Duration.ofMinutes(30));
+        Task after = new Task("After", "desc", Status.NEW, defaultTime.plusHours(4), Duration.ofMinutes(30));
+        manager.addAll(List.of(before, running, inside, after));
+
+        LocalDateTime from = defaultTime.plusHours(2);
+        LocalDateTime to = defaultTime.plusHours(4);
+        assertEquals(List.of(running, inside), List.copyOf(manager.getTasksBetween(from, to)));
+        assertEquals(List.of(inside), List.copyOf(manager.getTasksBetween(from.plusMinutes(30), to)));
+        assertTrue(manager.getTasksBetween(to, from).isEmpty());
+    }
+
+    @Test
+    void freeSlotIsFoundBetweenTasksAndFollowsChanges() {
+        Task first = new Task("First", "desc", Status.NEW, defaultTime, Duration.ofMinutes(60));
+        Task second = new Task("Second", "desc", Status.NEW, defaultTime.plusMinutes(90), Duration.ofMinutes(60));
+        manager.addAll(List.of(first, second));
+
+        assertEquals(defaultTime.plusMinutes(60), manager.findFreeSlot(Duration.ofMinutes(30), defaultTime));
+        assertEquals(defaultTime.plusMinutes(70), manager.findFreeSlot(Duration.ofMinutes(20), defaultTime.plusMinutes(70)));
+        assertEquals(defaultTime.plusMinutes(150), manager.findFreeSlot(Duration.ofMinutes(31), defaultTime));
+        assertEquals(defaultTime.minusHours(1), manager.findFreeSlot(Duration.ofMinutes(60), defaultTime.minusHours(1)));
+        // the prioritized set handed out is not the manager's own, so changing it moves no free time
+        manager.getPrioritizedTasks().headSet(second).clear();
+        assertEquals(defaultTime.plusMinutes(60), manager.findFreeSlot(Duration.ofMinutes(30), defaultTime));
+        assertEquals(2, manager.getPrioritizedTasks().size());
+
+        Task auto = new Task("Auto", "desc", Status.NEW);
+        auto.setDuration(Duration.ofMinutes(30));
+        manager.addTaskAutoScheduled(auto, defaultTime);
+        assertEquals(defaultTime.plusMinutes(60), auto.getStartTime());
+        assertEquals(defaultTime.plusMinutes(150), manager.findFreeSlot(Duration.ofMinutes(1), defaultTime));
+
+        manager.deleteByID(first.getId());
+        assertEquals(defaultTime, manager.findFreeSlot(Duration.ofMinutes(60), defaultTime));
+        assertThrows(IllegalArgumentException.class,
+                () -> manager.addTaskAutoScheduled(new Task("No duration", "desc", Status.NEW), defaultTime));
+    }
+
+    @Test
+    void resultVariantsReportOutcomesWithoutTouchingHistory() {
+        Task task = new Task("Task", "desc", Status.NEW, defaultTime, Duration.ofMinutes(30));
+        Task other = new Task("Other", "desc", Status.NEW, defaultTime2, Duration.ofMinutes(30));
+        Epic epic = new Epic("Epic", "desc");
+        manager.addTask(task);
+        manager.addTask(other);
+        manager.addTask(epic);
+        SubTask subtask = new SubTask("Sub", "desc", Status.NEW, epic.getId());
+        manager.addTask(subtask);
+
+        assertEquals(task, manager.peek(task.getId()));
+        assertTrue(manager.exists(epic.getId()));
+        assertFalse(manager.exists(1000));
+        assertTrue(manager.getHistory().isEmpty());
+
+        assertEquals(OperationResult.Outcome.NOT_FOUND, manager.update(1000, new Task("X", "desc")).getOutcome());
+        assertEquals(OperationResult.Outcome.TYPE_MISMATCH, manager.update(epic.getId(), new Task("X", "desc")).getOutcome());
+        Task clashing = new Task("Clash", "desc", Status.NEW, defaultTime2.plusMinutes(10), Duration.ofMinutes(30));
+        assertEquals(OperationResult.Outcome.CONFLICT, manager.update(task.getId(), clashing).getOutcome());
+        assertEquals(defaultTime, manager.peek(task.getId()).getStartTime());
+        assertEquals(OperationResult.Outcome.REJECTED, manager.changeStatus(epic.getId(), Status.DONE).getOutcome());
+
+        OperationResult changed = manager.changeStatus(subtask.getId(), Status.DONE);
+        assertTrue(changed.isSuccess());
+        assertEquals(Status.DONE, manager.peek(epic.getId()).getStatus());
+
+        OperationResult deleted = manager.delete(epic.getId());
+        assertEquals(OperationResult.Outcome.DELETED, deleted.getOutcome());
+        assertEquals(1, deleted.getCascaded());
+        assertFalse(manager.exists(subtask.getId()));
+        assertEquals(OperationResult.Outcome.NOT_FOUND, manager.delete(epic.getId()).getOutcome());
+    }
+
+    @Test
+    void snapshotIsNotAffectedByLaterWrites() {
+        Task task = new Task("Task", "desc", Status.NEW, defaultTime, Duration.ofMinutes(10));
+        manager.addTask(task);
+
+        TaskSnapshot snapshot = manager.snapshot();
+        manager.addTask(new Task("Task2", "desc", Status.NEW, defaultTime2, Duration.ofMinutes(10)));
+        manager.deleteByID(task.getId());
+
+        assertEquals(1, snapshot.getAllTasks().size());
+        assertEquals(task, snapshot.getTask(task.getId()));
+        assertEquals(1, snapshot.getPrioritizedTasks().size());
+        assertNotEquals(snapshot.getVersion(), manager.snapshot().getVersion());
+        assertEquals(1, manager.snapshot().getAllTasks().size());
+    }
+
+    @Test
+    void snapshotKeepsStatusesAndEpicsAsTheyWere() {
+        Task task = new Task("Task", "desc", Status.NEW, defaultTime, Duration.ofMinutes(10));
+        manager.addTask(task);
+        Epic epic = new Epic("Epic", "desc");
+        manager.addTask(epic);
+        SubTask subtask = new SubTask("Sub", "desc", Status.NEW, defaultTime2, Duration.ofMinutes(10), epic.getId());
+        manager.addTask(subtask);
+
+        TaskSnapshot snapshot = manager.snapshot();
+        manager.updateStatus(task.getId(), Status.DONE);
+        manager.updateStatus(subtask.getId(), Status.DONE);
+        manager.addTask(new SubTask("Sub2", "desc", Status.NEW, epic.getId()));
+
+        assertEquals(Status.NEW, snapshot.getTask(task.getId()).getStatus(), "Снимок не должен видеть новые статусы");
+        assertEquals(Status.NEW, snapshot.getTask(subtask.getId()).getStatus());
+        Epic frozen = (Epic) snapshot.getTask(epic.getId());
+        assertEquals(Status.NEW, frozen.getStatus());
+        assertEquals(1, frozen.subtasks.size());
+        assertEquals(Status.NEW, frozen.subtasks.get(subtask.getId()).getStatus());
+
+        TaskSnapshot later = manager.snapshot();
+        assertEquals(Status.DONE, later.getTask(task.getId()).getStatus());
+        assertEquals(Status.IN_PROGRESS, later.getTask(epic.getId()).getStatus());
+        assertEquals(2, ((Epic) later.getTask(epic.getId())).subtasks.size());
+        assertEquals(2, later.getPrioritizedTasks().size());
+    }
 
 }
\ No newline at end of file
@@ -13,6 +13,7 @@ import org.junit.jupiter.api.Test;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -51,6 +52,34 @@ class TaskTest {
 
 
 
+    @Test
+    void tasksWithLargeIdsAreEqual() {
+        Task task1 = new Task("qwe","qew", Status.NEW);
+        task1.setId(100_000);
+        Task task2 = new Task("qwe","qew", Status.NEW);
+        task2.setId(100_000);
+
+        assertEquals(task1, task2);
+        assertEquals(task1.hashCode(), task2.hashCode());
+    }
+
+    @Test
+    void scheduleIsKeptInWholeMinutes() {
+        LocalDateTime start = LocalDateTime.of(2025, 3, 1, 9, 30, 45, 123);
+        Task task = new Task("qwe", "qew", Status.NEW, start, Duration.ofSeconds(90));
+
+        assertEquals(LocalDateTime.of(2025, 3, 1, 9, 30), task.getStartTime());
+        assertEquals(Duration.ofMinutes(1), task.getDuration());
+        assertEquals(LocalDateTime.of(2025, 3, 1, 9, 31), task.getEndTime());
+        assertEquals(task.getStartMinute() + 1, task.getEndMinute());
+
+        Task unscheduled = new Task("qwe", "qew", Status.NEW);
+        assertFalse(unscheduled.isScheduled());
+        assertNull(unscheduled.getStartTime());
+        assertNull(unscheduled.getDuration());
+        assertNull(unscheduled.getEndTime());
+    }
+
     @Test
     void addNewTask() {
         Task task = new Task("Test addNewTask", "Test addNewTask description", Status.NEW, defaultTime, Duration.ofMinutes(10));
@@ -64,7 +93,7 @@ class TaskTest {
 
 
 
-        HashMap<Integer, Task> tasks = manager.getAllTasks();
+        Map<Integer, Task> tasks = manager.getAllTasks();
 
         assertNotNull(tasks, "Задачи не возвращаются.");
         assertEquals(1, tasks.size(), "Неверное количество задач.");